@@ -0,0 +1,210 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for appending to, querying, and validating chains of
+ * various sizes. Every hash is valid, so building a chain costs one
+ * hash per block.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ChainBenchmark {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks in the chain.
+   */
+  @Param({"1000", "100000", "1000000"})
+  int chainSize;
+
+  /**
+   * The number of users in the chain.
+   */
+  @Param({"10", "1000"})
+  int users;
+
+  /**
+   * The chain.
+   */
+  BlockChain chain;
+
+  /**
+   * The names of the users.
+   */
+  String[] names;
+
+  /**
+   * A block that can go on the end of the chain.
+   */
+  Block extra;
+
+  /**
+   * Which user we ask about next.
+   */
+  int nextUser;
+
+  /**
+   * Which block we ask for next.
+   */
+  int nextBlock;
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build a block for the end of a chain. Every nonce is valid, so
+   * nonce 0 will do.
+   *
+   * @param target
+   *   The chain the block goes on.
+   * @param t
+   *   The transaction in the block.
+   *
+   * @return the block.
+   */
+  static Block nextBlock(BlockChain target, Transaction t) {
+    return new Block(target.getSize() + 1, t, target.getHash(), 0L);
+  } // nextBlock(BlockChain, Transaction)
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Build the chain: a deposit for each user, then transfers around the
+   * users until the chain is full.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    this.chain = new BlockChain((h) -> true);
+    this.names = new String[this.users];
+    for (int i = 0; i < this.users; i++) {
+      this.names[i] = "user" + i;
+    } // for
+    for (int i = 1; i < this.chainSize; i++) {
+      Transaction t;
+      if (i <= this.users) {
+        t = new Transaction("", this.names[i - 1], 1_000_000);
+      } else {
+        t = new Transaction(this.names[i % this.users], this.names[(i + 1) % this.users], 1);
+      } // if/else
+      this.chain.append(nextBlock(this.chain, t));
+    } // for
+    this.extra = nextBlock(this.chain, new Transaction(this.names[0], this.names[1], 1));
+    this.nextUser = 0;
+    this.nextBlock = 0;
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Append a block and remove it again, so the chain keeps its size.
+   *
+   * @return the size of the chain with the block.
+   */
+  @Benchmark
+  public int appendAndRemove() {
+    this.chain.append(this.extra);
+    int size = this.chain.getSize();
+    this.chain.removeLast();
+    return size;
+  } // appendAndRemove()
+
+  /**
+   * Look up a user's balance.
+   *
+   * @return the balance.
+   */
+  @Benchmark
+  public long balance() {
+    this.nextUser = (this.nextUser + 1) % this.users;
+    return this.chain.balance(this.names[this.nextUser]);
+  } // balance()
+
+  /**
+   * Look up a block by height.
+   *
+   * @return the block.
+   */
+  @Benchmark
+  public Block getBlock() {
+    this.nextBlock = (this.nextBlock + 7919) % this.chainSize;
+    return this.chain.getBlock(this.nextBlock);
+  } // getBlock()
+
+  /**
+   * Check the chain, rehashing only blocks past the watermark.
+   *
+   * @return whether the chain is correct.
+   */
+  @Benchmark
+  public boolean isCorrect() {
+    return this.chain.isCorrect();
+  } // isCorrect()
+
+  /**
+   * Check the whole chain, rehashing every block.
+   *
+   * @return whether the chain is correct.
+   */
+  @Benchmark
+  public boolean isCorrectDeep() {
+    return this.chain.isCorrect(true);
+  } // isCorrectDeep()
+
+  /**
+   * Check the whole chain, rehashing every block in parallel.
+   *
+   * @return whether the chain is correct.
+   */
+  @Benchmark
+  public boolean isCorrectParallel() {
+    return this.chain.isCorrectParallel();
+  } // isCorrectParallel()
+
+  /**
+   * Add up the amounts of every transaction, one block at a time.
+   *
+   * @return the total.
+   */
+  @Benchmark
+  public long volume() {
+    return this.chain.transactionStream().mapToLong(Transaction::getAmount).sum();
+  } // volume()
+
+  /**
+   * Add up the amounts of every transaction, in parallel.
+   *
+   * @return the total.
+   */
+  @Benchmark
+  public long volumeParallel() {
+    return this.chain.transactionStream().parallel().mapToLong(Transaction::getAmount).sum();
+  } // volumeParallel()
+} // class ChainBenchmark
@@ -0,0 +1,108 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for hashing blocks.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The length of the names in the transaction.
+   */
+  @Param({"5", "100"})
+  int nameLength;
+
+  /**
+   * Whether to hash nonces with our own engine or MessageDigest.
+   */
+  @Param({"true", "false"})
+  boolean engine;
+
+  /**
+   * The block we hash.
+   */
+  Block block;
+
+  /**
+   * A hasher for the contents of that block.
+   */
+  NonceHasher hasher;
+
+  /**
+   * A validator that only a hash of all zeros meets, so every nonce is
+   * checked in full.
+   */
+  DifficultyValidator validator;
+
+  /**
+   * The next nonce to hash.
+   */
+  long nonce;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Build the block and hasher.
+   */
+  @Setup
+  public void setup() throws Exception {
+    Transaction t = new Transaction("A".repeat(this.nameLength), "B".repeat(this.nameLength),
+        1234);
+    Hash prev = new Hash(new byte[32]);
+    this.block = new Block(17, t, prev, 0L);
+    this.hasher = new NonceHasher(17, t, prev, this.engine);
+    this.validator = DifficultyValidator.leadingZeroBits(DifficultyValidator.HASH_BITS);
+    this.nonce = 0;
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Hash a whole block from scratch, as append and isCorrect do.
+   *
+   * @return the hash.
+   */
+  @Benchmark
+  public Hash computeHash() throws Exception {
+    return this.block.computeHash();
+  } // computeHash()
+
+  /**
+   * Hash and check the next nonce, as the mining loop does.
+   *
+   * @return whether the hash is valid.
+   */
+  @Benchmark
+  public boolean hashNonce() {
+    return this.hasher.meets(this.nonce++, this.validator);
+  } // hashNonce()
+} // class HashBenchmark
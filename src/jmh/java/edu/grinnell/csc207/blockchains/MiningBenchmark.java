@@ -0,0 +1,126 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for mining blocks at several difficulties.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MiningBenchmark {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of leading zero bits a valid hash needs.
+   */
+  @Param({"8", "12", "16"})
+  int difficulty;
+
+  /**
+   * The validator for that difficulty.
+   */
+  HashValidator validator;
+
+  /**
+   * A miner that uses every processor.
+   */
+  ParallelMiner parallel;
+
+  /**
+   * A miner with a single worker.
+   */
+  ParallelMiner single;
+
+  /**
+   * The hash of the previous block.
+   */
+  Hash prev;
+
+  /**
+   * Which block we mine next, so each call mines something new.
+   */
+  int next;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Build the validator and miners.
+   */
+  @Setup
+  public void setup() {
+    this.validator = DifficultyValidator.leadingZeroBits(this.difficulty);
+    this.parallel = new ParallelMiner(Runtime.getRuntime().availableProcessors());
+    this.single = new ParallelMiner(1);
+    this.prev = new Hash(new byte[32]);
+    this.next = 0;
+  } // setup()
+
+  /**
+   * Shut down the miners' pools.
+   */
+  @TearDown
+  public void tearDown() {
+    this.parallel.close();
+    this.single.close();
+  } // tearDown()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Mine with the sequential search in Block.
+   *
+   * @return the mined block.
+   */
+  @Benchmark
+  public Block sequential() {
+    return new Block(1, new Transaction("", "A", this.next++), this.prev, this.validator);
+  } // sequential()
+
+  /**
+   * Mine with a single-worker miner.
+   *
+   * @return the mined block.
+   */
+  @Benchmark
+  public Block singleWorker() {
+    return this.single.mine(1, new Transaction("", "A", this.next++), this.prev,
+        this.validator);
+  } // singleWorker()
+
+  /**
+   * Mine with a worker per processor.
+   *
+   * @return the mined block.
+   */
+  @Benchmark
+  public Block allWorkers() {
+    return this.parallel.mine(1, new Transaction("", "A", this.next++), this.prev,
+        this.validator);
+  } // allWorkers()
+} // class MiningBenchmark
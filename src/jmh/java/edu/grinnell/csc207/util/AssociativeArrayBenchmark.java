@@ -0,0 +1,171 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks comparing the hash-table AssociativeArray with the original
+ * linear-search one, on lookups that hit, lookups that miss, and updates
+ * of existing keys.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class AssociativeArrayBenchmark {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of keys in the array.
+   */
+  @Param({"10000", "1000000"})
+  int keys;
+
+  /**
+   * Which implementation to measure: "open" or "legacy".
+   */
+  @Param({"open", "legacy"})
+  String impl;
+
+  /**
+   * The hash-table array (if impl is "open").
+   */
+  AssociativeArray<String, Integer> open;
+
+  /**
+   * The linear-search array (if impl is "legacy").
+   */
+  LegacyAssociativeArray<String, Integer> legacy;
+
+  /**
+   * The keys in the array.
+   */
+  String[] present;
+
+  /**
+   * Keys that are not in the array.
+   */
+  String[] absent;
+
+  /**
+   * Which key we use next.
+   */
+  int next;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Fill the array.
+   *
+   * @throws NullKeyException
+   *   Never; every key is non-null.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws NullKeyException {
+    this.present = new String[this.keys];
+    this.absent = new String[this.keys];
+    for (int i = 0; i < this.keys; i++) {
+      this.present[i] = "user" + i;
+      this.absent[i] = "nobody" + i;
+    } // for
+    if (this.impl.equals("open")) {
+      this.open = new AssociativeArray<String, Integer>();
+      for (int i = 0; i < this.keys; i++) {
+        this.open.set(this.present[i], i);
+      } // for
+    } else {
+      // Filling it with set would take quadratic time, so fill it directly.
+      this.legacy = new LegacyAssociativeArray<String, Integer>();
+      this.legacy.pairs = Arrays.copyOf(this.legacy.pairs, this.keys);
+      for (int i = 0; i < this.keys; i++) {
+        this.legacy.pairs[i] = new KVPair<String, Integer>(this.present[i], i);
+      } // for
+      this.legacy.size = this.keys;
+    } // if/else
+    this.next = 0;
+  } // setup()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Pick the next index, spread over the whole array.
+   *
+   * @return the index.
+   */
+  int nextIndex() {
+    this.next = (this.next + 7919) % this.keys;
+    return this.next;
+  } // nextIndex()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Look up a key that is present.
+   *
+   * @return its value.
+   *
+   * @throws KeyNotFoundException
+   *   Never; the key is present.
+   */
+  @Benchmark
+  public Integer getHit() throws KeyNotFoundException {
+    String key = this.present[this.nextIndex()];
+    return (this.open != null) ? this.open.get(key) : this.legacy.get(key);
+  } // getHit()
+
+  /**
+   * Ask about a key that is absent.
+   *
+   * @return false.
+   */
+  @Benchmark
+  public boolean hasKeyMiss() {
+    String key = this.absent[this.nextIndex()];
+    return (this.open != null) ? this.open.hasKey(key) : this.legacy.hasKey(key);
+  } // hasKeyMiss()
+
+  /**
+   * Change the value of a key that is present.
+   *
+   * @return the index of the key.
+   *
+   * @throws NullKeyException
+   *   Never; the key is non-null.
+   */
+  @Benchmark
+  public int setExisting() throws NullKeyException {
+    int i = this.nextIndex();
+    if (this.open != null) {
+      this.open.set(this.present[i], i);
+    } else {
+      this.legacy.set(this.present[i], i);
+    } // if/else
+    return i;
+  } // setExisting()
+} // class AssociativeArrayBenchmark
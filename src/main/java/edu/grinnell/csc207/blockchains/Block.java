@@ -1,6 +1,4 @@
 package edu.grinnell.csc207.blockchains;
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 
@@ -41,11 +39,6 @@ public class Block {
    */
   Hash hash;
 
-  /**
-   * The MessageDigest to calculate the hash for each block.
-  */
-  MessageDigest md;
-
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -66,20 +59,55 @@ public class Block {
    */
   public Block(int num, Transaction transaction, Hash prevHash,
       HashValidator check) {
+    this(num, transaction, prevHash, check, null);
+  } // Block(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Create a new block from the specified block number, transaction, and
+   * previous hash, mining to choose a nonce that meets the requirements
+   * of the validator. The search resumes from any checkpoint for the
+   * block and saves its progress as it goes, so an interrupted search
+   * need not start over.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   * @param checkpoints
+   *   Where to keep checkpoints (or null, for none).
+   */
+  public Block(int num, Transaction transaction, Hash prevHash,
+      HashValidator check, NonceCheckpoints checkpoints) {
     this.num = num;
     this.transaction = transaction;
     this.prevHash = prevHash;
-    long count = 0;
-    do {
-      this.nonce = count;
-      try {
-        this.hash = this.computeHash();
-      } catch (NoSuchAlgorithmException e) {
-        System.err.println("Invalid algorithm");
-      } // try/catch
+    long start = System.nanoTime();
+    NonceHasher hasher = new NonceHasher(num, transaction, prevHash);
+    long first = (checkpoints == null) ? 0 : checkpoints.load(num, transaction, prevHash, check);
+    long lastSave = start;
+    long count = first;
+    while (!hasher.meets(count, check)) {
       count++;
-    } while (!check.isValid(hash));
-  } // Block(int, Transaction, Hash, HashValidator)
+      if ((checkpoints != null) && ((count & (ParallelMiner.CHUNK_SIZE - 1)) == 0)) {
+        long now = System.nanoTime();
+        if (now - lastSave >= checkpoints.interval) {
+          checkpoints.save(num, transaction, prevHash, check, count);
+          lastSave = now;
+        } // if
+      } // if
+    } // while
+    if (checkpoints != null) {
+      checkpoints.clear(num, transaction, prevHash, check);
+    } // if
+    this.nonce = count;
+    this.hash = hasher.hash(count);
+    ChainMetrics.GLOBAL.hashesAttempted.add(count - first + 1);
+    ChainMetrics.GLOBAL.mining.record(System.nanoTime() - start);
+  } // Block(int, Transaction, Hash, HashValidator, NonceCheckpoints)
 
   /**
    * Create a new block, computing the hash for the block.
@@ -115,21 +143,8 @@ public class Block {
    * @return the calculated hash of the block.
    */
   public Hash computeHash() throws NoSuchAlgorithmException {
-    this.md = MessageDigest.getInstance("sha-256");
-    byte[] numbytes = ByteBuffer.allocate(Integer.BYTES).putInt(num).array();
-    byte[] sourcebytes = transaction.getSource().getBytes();
-    byte[] targetbytes = transaction.getTarget().getBytes();
-    byte[] amountbytes = ByteBuffer.allocate(Integer.BYTES).putInt(transaction.getAmount()).array();
-    byte[] prevbytes = prevHash.getBytes();
-    byte[] noncebytes = ByteBuffer.allocate(Long.BYTES).putLong(nonce).array();
-    md.update(numbytes);
-    md.update(sourcebytes);
-    md.update(targetbytes);
-    md.update(amountbytes);
-    md.update(prevbytes);
-    md.update(noncebytes);
-    byte[] hash = md.digest();
-    return new Hash(hash);
+    ChainMetrics.GLOBAL.hashesComputed.increment();
+    return new NonceHasher(this.num, this.transaction, this.prevHash).hash(this.nonce);
   } // computeHash()
 
   // +---------+-----------------------------------------------------
@@ -4,34 +4,73 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import edu.grinnell.csc207.util.AssociativeArray;
-import edu.grinnell.csc207.util.KeyNotFoundException;
+import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.StringLongMap;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A full blockchain.
  *
+ * A chain is safe to share between threads. Reads (of the size, the
+ * last hash, balances, and blocks) do not lock: they read optimistically
+ * and only wait if a block was appended or removed while they read. Each
+ * read sees the chain as it was between two changes. Appending and
+ * removing blocks are exclusive, and checks of the chain wait for them
+ * but not for reads.
+ *
  * @author Leonardo Alves Nunes
  * @author Natalie Nardone
  */
 public class BlockChain implements Iterable<Transaction> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of blocks between snapshots of the balances.
+   */
+  static final int SNAPSHOT_INTERVAL = 256;
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The number of blocks in the BlockChain.
+   * The blocks in the BlockChain, by height.
+   */
+  BlockStore store;
+
+  /**
+   * The height of each block in the BlockChain, by its hash.
+   */
+  AssociativeArray<Hash, Integer> heights;
+
+  /**
+   * The height of the last block of the prefix of the chain known to
+   * have correct hashes and links (the watermark).
    */
-  int size;
+  int verifiedHeight;
 
   /**
-   * The first node in the BlockChain.
+   * The hash of the block at verifiedHeight when it was verified.
    */
-  Node first;
+  Hash verifiedHash;
 
   /**
-   * The last node in the BlockChain.
+   * The balances as of the block at verifiedHeight, replayed block by
+   * block.
    */
-  Node last;
+  StringLongMap verifiedBalances;
 
   /**
    * The validator used to validate the blocks in the BlockChain.
@@ -39,15 +78,46 @@ public class BlockChain implements Iterable<Transaction> {
   HashValidator validator;
 
   /**
-   * An AssociativeArray of all of the people in the BlockChain and their current balances.
+   * All of the people in the BlockChain and their current balances.
    */
-  AssociativeArray<String, Integer> balances;
+  StringLongMap balances;
 
   /**
-   * An ArrayList of all of the people in the BlockChain.
+   * Copies of the balances as of every SNAPSHOT_INTERVAL-th block,
+   * starting with the first.
+   */
+  ArrayList<StringLongMap> snapshots;
+
+  /**
+   * An ArrayList of all of the people in the BlockChain, in the order
+   * they first appear.
    */
   ArrayList<String> userList;
 
+  /**
+   * The height of the block in which each person in userList first
+   * appears.
+   */
+  StringLongMap joined;
+
+  /**
+   * The miner used to find nonces for new blocks.
+   */
+  ParallelMiner miner;
+
+  /**
+   * The lock that guards all of the above. Appending and removing blocks
+   * take the write lock; checks take the read lock; other reads are
+   * optimistic.
+   */
+  StampedLock lock;
+
+  /**
+   * The monitor that keeps checks, which move the watermark while only
+   * holding the read lock, from running at the same time.
+   */
+  Object checking;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -59,20 +129,411 @@ public class BlockChain implements Iterable<Transaction> {
    *   The validator used to check elements.
    */
   public BlockChain(HashValidator check) {
-    Block newBlock = new Block(0, new Transaction("", "", 0), new Hash(new byte[] {}), check);
-    Node newNode = new Node(null, newBlock, null);
-    this.size = 1;
-    this.first = newNode;
-    this.last = newNode;
+    this(check, new ParallelMiner());
+  } // BlockChain(HashValidator)
+
+  /**
+   * Create a new blockchain using a validator to check elements and
+   * a particular miner to mine new blocks.
+   *
+   * @param check
+   *   The validator used to check elements.
+   * @param blockMiner
+   *   The miner used to find nonces for new blocks.
+   */
+  public BlockChain(HashValidator check, ParallelMiner blockMiner) {
+    Block newBlock =
+        blockMiner.mine(0, new Transaction("", "", 0), new Hash(new byte[] {}), check);
+    this.store = new BlockStore();
+    this.heights = new AssociativeArray<Hash, Integer>();
+    this.addBlock(newBlock);
+    this.verifiedBalances = new StringLongMap();
+    this.markVerified(0);
     this.validator = check;
-    this.balances = new AssociativeArray<String, Integer>();
+    this.balances = new StringLongMap();
+    this.snapshots = new ArrayList<StringLongMap>();
+    this.snapshots.add(new StringLongMap());
     this.userList = new ArrayList<String>();
-  } // BlockChain(HashValidator)
+    this.joined = new StringLongMap();
+    this.miner = blockMiner;
+    this.lock = new StampedLock();
+    this.checking = new Object();
+  } // BlockChain(HashValidator, ParallelMiner)
 
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
+  /**
+   * Get ready to check the chain, dropping the watermark back to the
+   * first block for a deep check or if the block at the watermark has
+   * changed.
+   *
+   * @param deep
+   *   True to recheck every block.
+   *
+   * @return the height of the last block that need not be checked.
+   */
+  int resume(boolean deep) {
+    if (deep || (this.verifiedHeight >= this.store.size())
+        || !this.store.get(this.verifiedHeight).getHash().equals(this.verifiedHash)) {
+      this.markVerified(0);
+      this.verifiedBalances.clear();
+    } // if
+    return this.verifiedHeight;
+  } // resume(boolean)
+
+  /**
+   * Find the first thing wrong with the blocks past the watermark, in a
+   * single pass. Each block is checked on its own and against the
+   * balances replayed up to the block before it; blocks that pass move
+   * the watermark.
+   *
+   * @return the first problem, or null if there is none.
+   */
+  Problem findProblem() {
+    int size = this.store.size();
+    for (int height = this.verifiedHeight + 1; height < size; height++) {
+      Problem problem = Problem.first(this.checkBlock(height),
+          this.checkBalance(this.verifiedBalances, height));
+      if (problem != null) {
+        return problem;
+      } // if
+      replay(this.verifiedBalances, this.store.get(height).getTransaction(), 1);
+      this.markVerified(height);
+    } // for
+    return null;
+  } // findProblem()
+
+  /**
+   * Find the first thing wrong with the chain, checking every block in
+   * parallel. Moves the watermark to the end if there is no problem, and
+   * back to the first block if there is one.
+   *
+   * @return the first problem, or null if there is none.
+   */
+  Problem findProblemParallel() {
+    StringLongMap ledger = new StringLongMap();
+    Problem problem = ParallelVerifier.verify(this, this.miner.pool, ledger);
+    if (problem == null) {
+      this.verifiedBalances = ledger;
+      this.markVerified(this.store.size() - 1);
+    } else {
+      this.resume(true);
+    } // if/else
+    return problem;
+  } // findProblemParallel()
+
+  /**
+   * Check one block on its own: its amount, its link to the block
+   * before it, its hash, and the validator.
+   *
+   * @param height
+   *   The height of the block (at least 1).
+   *
+   * @return the first problem with the block, or null if there is none.
+   */
+  Problem checkBlock(int height) {
+    Block current = this.store.get(height);
+    if (current.getTransaction().getAmount() < 0) {
+      return new Problem(height, Problem.AMOUNT,
+          "Negative amount in transaction: " + current.getTransaction().getAmount());
+    } // if
+
+    Block previous = this.store.get(height - 1);
+    if (!previous.getHash().equals(current.getPrevHash())) {
+      return new Problem(height, Problem.LINK,
+          "Previous hash does not match with prevHash of the current one."
+          + "prevHash of current: " + current.getPrevHash()
+          + ". hash of previous: " + previous.getHash());
+    } // if
+
+    try {
+      if (!current.getHash().equals(current.computeHash())) {
+        return new Problem(height, Problem.HASH,
+            "The provided hash does not match the hash generated by the contents");
+      } // if
+    } catch (NoSuchAlgorithmException e) {
+      System.err.println("Invalid Algorithm");
+    } // try/catch
+
+    if (!validator.isValid(current.getHash())) {
+      return new Problem(height, Problem.VALIDATOR, "Invalid Hash. Hash: " + current.getHash());
+    } // if
+    return null;
+  } // checkBlock(int)
+
+  /**
+   * Check that the source of a block can afford its transaction.
+   *
+   * @param ledger
+   *   The balances as of the block before.
+   * @param height
+   *   The height of the block.
+   *
+   * @return the overdraft, or null if there is none.
+   */
+  Problem checkBalance(StringLongMap ledger, int height) {
+    Transaction t = this.store.get(height).getTransaction();
+    String source = t.getSource();
+    if (!source.equals("") && (ledger.get(source) - t.getAmount() < 0)) {
+      return new Problem(height, Problem.BALANCE, "Negative balance for: " + source);
+    } // if
+    return null;
+  } // checkBalance(StringLongMap, int)
+
+  /**
+   * Find the snapshot nearest to a block.
+   *
+   * @param height
+   *   The height of the block.
+   *
+   * @return the index of the snapshot.
+   */
+  int nearestSnapshot(int height) {
+    int snap = (height + SNAPSHOT_INTERVAL / 2) / SNAPSHOT_INTERVAL;
+    return Math.min(snap, this.snapshots.size() - 1);
+  } // nearestSnapshot(int)
+
+  /**
+   * Bring some balances forward or back to a given block, by replaying
+   * or undoing the blocks in between.
+   *
+   * @param ledger
+   *   The balances to change.
+   * @param from
+   *   The height of the block the balances are as of.
+   * @param to
+   *   The height of the block the balances should be as of.
+   */
+  void roll(StringLongMap ledger, int from, int to) {
+    for (int h = from + 1; h <= to; h++) {
+      replay(ledger, this.store.get(h).getTransaction(), 1);
+    } // for
+    for (int h = from; h > to; h--) {
+      replay(ledger, this.store.get(h).getTransaction(), -1);
+    } // for
+  } // roll(StringLongMap, int, int)
+
+  /**
+   * Bring some balances back to a given block, either in place or from
+   * a copy of the nearest snapshot, whichever is nearer.
+   *
+   * @param ledger
+   *   The balances, which may be changed.
+   * @param from
+   *   The height of the block the balances are as of.
+   * @param to
+   *   The height of the block the balances should be as of.
+   *
+   * @return the balances as of the block at height to.
+   */
+  StringLongMap rollTo(StringLongMap ledger, int from, int to) {
+    int snap = this.nearestSnapshot(to);
+    if (from - to <= Math.abs(snap * SNAPSHOT_INTERVAL - to)) {
+      this.roll(ledger, from, to);
+      return ledger;
+    } // if
+    StringLongMap result = this.snapshots.get(snap).clone();
+    this.roll(result, snap * SNAPSHOT_INTERVAL, to);
+    return result;
+  } // rollTo(StringLongMap, int, int)
+
+  /**
+   * Read something from the chain without locking, unless a block is
+   * appended or removed during the read, in which case we read again
+   * with the read lock. The reader must not change anything, and may
+   * see the chain mid-change (and so fail) on its first try.
+   *
+   * @param <T>
+   *   The type of the result.
+   * @param reader
+   *   What to read.
+   *
+   * @return the result of the read.
+   */
+  <T> T read(Supplier<T> reader) {
+    long stamp = this.lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        T result = reader.get();
+        if (this.lock.validate(stamp)) {
+          return result;
+        } // if
+      } catch (RuntimeException e) {
+        // A writer got in the way, so the result does not count.
+      } // try/catch
+    } // if
+    stamp = this.lock.readLock();
+    try {
+      return reader.get();
+    } finally {
+      this.lock.unlockRead(stamp);
+    } // try/finally
+  } // read(Supplier<T>)
+
+  /**
+   * Read a number from the chain, as in read, without boxing it.
+   *
+   * @param reader
+   *   What to read.
+   *
+   * @return the result of the read.
+   */
+  long readLong(LongSupplier reader) {
+    long stamp = this.lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        long result = reader.getAsLong();
+        if (this.lock.validate(stamp)) {
+          return result;
+        } // if
+      } catch (RuntimeException e) {
+        // A writer got in the way, so the result does not count.
+      } // try/catch
+    } // if
+    stamp = this.lock.readLock();
+    try {
+      return reader.getAsLong();
+    } finally {
+      this.lock.unlockRead(stamp);
+    } // try/finally
+  } // readLong(LongSupplier)
+
+  /**
+   * Put a block that has been checked on the end of the chain, and
+   * update the watermark, the balances, and the snapshots. The caller
+   * must hold the write lock.
+   *
+   * @param blk
+   *   The block, whose hash is valid and right for its contents, and
+   *   whose previous hash is the hash of the last block.
+   */
+  void extend(Block blk) {
+    this.addBlock(blk);
+    // We just checked everything but the amount and the balance.
+    int height = this.store.size() - 1;
+    if ((this.verifiedHeight == height - 1) && (blk.getTransaction().getAmount() >= 0)
+        && (this.checkBalance(this.verifiedBalances, height) == null)) {
+      replay(this.verifiedBalances, blk.getTransaction(), 1);
+      this.markVerified(height);
+    } // if
+
+    // update transactionss
+    String source = blk.getTransaction().getSource();
+    String target = blk.getTransaction().getTarget();
+    int amount = blk.getTransaction().getAmount();
+    if (!source.equals("")) {
+      this.join(source, height);
+      balances.addTo(source, -amount);
+    } // if
+    this.join(target, height);
+    balances.addTo(target, amount);
+    if (height % SNAPSHOT_INTERVAL == 0) {
+      this.snapshots.add(this.balances.clone());
+    } // if
+  } // extend(Block)
+
+  /**
+   * Remove every block after a given height. The caller must hold the
+   * write lock.
+   *
+   * @param height
+   *   The height of the block that becomes the last block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no block at that height.
+   */
+  void truncate(int height) {
+    int tip = this.store.size() - 1;
+    if ((height < 0) || (height > tip)) {
+      throw new IndexOutOfBoundsException("No block at height " + height + " of " + (tip + 1));
+    } // if
+    this.balances = this.rollTo(this.balances, tip, height);
+    if (this.verifiedHeight > height) {
+      this.verifiedBalances = this.rollTo(this.verifiedBalances, this.verifiedHeight, height);
+      this.markVerified(height);
+    } // if
+    while (this.snapshots.size() > height / SNAPSHOT_INTERVAL + 1) {
+      this.snapshots.remove(this.snapshots.size() - 1);
+    } // while
+    // Forget the people who only appear in the blocks we remove. (Rolling
+    // back in place leaves them in the balances with nothing.)
+    while (!this.userList.isEmpty()
+        && (this.joined.get(this.userList.get(this.userList.size() - 1)) > height)) {
+      String user = this.userList.remove(this.userList.size() - 1);
+      this.joined.remove(user);
+      this.balances.remove(user);
+      this.verifiedBalances.remove(user);
+    } // while
+    for (int h = tip; h > height; h--) {
+      this.heights.remove(this.store.get(h).getHash());
+    } // for
+    this.store.truncate(height + 1);
+  } // truncate(int)
+
+  /**
+   * Add a person to userList if they are not already there. The caller
+   * must hold the write lock.
+   *
+   * @param user
+   *   The person.
+   * @param height
+   *   The height of the block in which they appear.
+   */
+  void join(String user, int height) {
+    if (!this.joined.containsKey(user)) {
+      this.joined.put(user, height);
+      this.userList.add(user);
+    } // if
+  } // join(String, int)
+
+  /**
+   * Move the watermark.
+   *
+   * @param height
+   *   The height of the last verified block.
+   */
+  void markVerified(int height) {
+    this.verifiedHeight = height;
+    this.verifiedHash = this.store.get(height).getHash();
+  } // markVerified(int)
+
+  /**
+   * Put a block on the end of the store and index its hash.
+   *
+   * @param blk
+   *   The block.
+   */
+  void addBlock(Block blk) {
+    this.store.add(blk);
+    try {
+      this.heights.set(blk.getHash(), this.store.size() - 1);
+    } catch (NullKeyException e) {
+      System.err.println("Block has no hash");
+    } // try/catch
+  } // addBlock(Block)
+
+  /**
+   * Set up a job for a block at the end of the chain. The number and
+   * the previous hash are read together, so they always agree.
+   *
+   * @param t
+   *   The transaction that goes in the block.
+   * @param isStale
+   *   Something that returns true once the block is no longer wanted, or
+   *   null if it is no longer wanted once the end of the chain changes.
+   *
+   * @return the job, which has not been started.
+   */
+  MiningJob nextJob(Transaction t, BooleanSupplier isStale) {
+    return this.read(() -> {
+      Hash tip = this.store.last().getHash();
+      BooleanSupplier stale = (isStale != null) ? isStale : () -> !this.getHash().equals(tip);
+      return new MiningJob(this.store.size() + 1, t, tip, stale);
+    });
+  } // nextJob(Transaction, BooleanSupplier)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -87,16 +548,101 @@ public class BlockChain implements Iterable<Transaction> {
    * @return a new block with correct number, hashes, and such.
    */
   public Block mine(Transaction t) {
-    return new Block(this.size + 1, t, this.getHash(), validator);
+    MiningJob job = this.nextJob(t, null);
+    return this.miner.mine(job.num, t, job.prevHash, validator);
   } // mine(Transaction)
 
+  /**
+   * Start mining a new block for the end of the chain in the background.
+   * The job is cancelled if the end of the chain changes before a nonce
+   * is found. Cancel the job to stop mining early, or use orTimeout to
+   * set a deadline.
+   *
+   * @param t
+   *   The transaction that goes in the block.
+   *
+   * @return the job that will complete with the new block.
+   */
+  public MiningJob mineAsync(Transaction t) {
+    return this.miner.start(this.nextJob(t, null), validator);
+  } // mineAsync(Transaction)
+
+  /**
+   * Mine and append a block for each of a list of transactions, in
+   * order. Mining and appending overlap: each block starts mining as
+   * soon as the one before it has been mined, while this thread checks
+   * and appends the blocks that are ready. The chain should not be
+   * changed in other ways until this returns.
+   *
+   * @param transactions
+   *   The transactions, one for each new block.
+   *
+   * @return the blocks that were appended.
+   *
+   * @throws IllegalArgumentException
+   *   If a mined block cannot be appended (e.g., because the chain was
+   *   changed elsewhere). The blocks before it stay appended and no more
+   *   blocks are mined.
+   */
+  public List<Block> mineAll(List<Transaction> transactions) {
+    List<Block> appended = new ArrayList<Block>();
+    this.mineAll(transactions, appended);
+    return appended;
+  } // mineAll(List<Transaction>)
+
+  /**
+   * Mine and append a block for each of a list of transactions, as in
+   * mineAll(List), keeping track of the blocks appended so far so that
+   * the caller knows which transactions made it in even if one fails.
+   *
+   * @param transactions
+   *   The transactions, one for each new block.
+   * @param appended
+   *   Where to put the blocks as they are appended.
+   *
+   * @throws IllegalArgumentException
+   *   If a mined block cannot be appended, as in mineAll(List).
+   */
+  void mineAll(List<Transaction> transactions, List<Block> appended) {
+    AtomicBoolean abandoned = new AtomicBoolean(false);
+    List<CompletableFuture<Block>> pending = new ArrayList<CompletableFuture<Block>>();
+    CompletableFuture<Block> previous = null;
+    int num = 0;
+    for (Transaction t : transactions) {
+      if (previous == null) {
+        MiningJob first = this.nextJob(t, abandoned::get);
+        num = first.num + 1;
+        previous = this.miner.start(first, this.validator);
+      } else {
+        int blockNum = num++;
+        previous = previous.thenCompose((prev) -> this.miner.start(
+            new MiningJob(blockNum, t, prev.getHash(), abandoned::get), this.validator));
+      } // if/else
+      pending.add(previous);
+    } // for
+
+    try {
+      for (CompletableFuture<Block> next : pending) {
+        Block blk = next.join();
+        this.append(blk);
+        appended.add(blk);
+      } // for
+    } catch (RuntimeException e) {
+      abandoned.set(true);
+      if ((e instanceof CompletionException) && (e.getCause() instanceof RuntimeException)) {
+        throw (RuntimeException) e.getCause();
+      } // if
+      throw e;
+    } // try/catch
+  } // mineAll(List<Transaction>, List<Block>)
+
   /**
    * Get the number of blocks curently in the chain.
    *
    * @return the number of blocks in the chain, including the initial block.
    */
   public int getSize() {
-    return this.size;
+    return (int) this.readLong(this.store::size);
   } // getSize()
 
   /**
@@ -120,57 +666,28 @@ public class BlockChain implements Iterable<Transaction> {
    */
   public void append(Block blk) {
     // need to handle case where didn't mine a block or invalid nonce, etc
+    long start = System.nanoTime();
     Hash testHash;
     try {
+      // Hash outside the lock, so that readers do not wait for it.
       testHash = blk.computeHash();
-      if (validator.isValid(blk.getHash()) && (blk.getHash().equals(testHash))
-           && (blk.getPrevHash().equals(this.getHash()))) {
-        Node newNode = new Node(this.last, blk, null);
-        this.last.next = newNode;
-        this.last = newNode;
-        size++;
-
-        // update transactionss
-        String source = blk.getTransaction().getSource();
-        String target = blk.getTransaction().getTarget();
-        int amount = blk.getTransaction().getAmount();
-        if (!source.equals("")) {
-          if (balances.hasKey(source)) {
-            try {
-              balances.set(source, balances.get(source) - amount);
-            } catch (Exception e) {
-              System.err.println("Key exception");
-            } // try/catch
-          } else {
-            // not valid
-            this.userList.add(source);
-            try {
-              balances.set(source, 0 - amount);
-            } catch (Exception e) {
-              System.err.println("Key exception");
-            } // try/catch
-          } // if/else
-        } // if
-        if (balances.hasKey(target)) {
-          try {
-            balances.set(target, balances.get(target) + amount);
-          } catch (Exception e) {
-            System.err.println("Key exception");
-          } // try/catch
-        } else {
-          this.userList.add(target);
-          try {
-            balances.set(target, amount);
-          } catch (Exception e) {
-            System.err.println("Key exception");
-          } // try/catch
-        } // if/else
-      } else {
+      if (!validator.isValid(blk.getHash()) || !blk.getHash().equals(testHash)) {
         throw new IllegalArgumentException();
-      } // if/else
+      } // if
+      long stamp = this.lock.writeLock();
+      try {
+        if (!blk.getPrevHash().equals(this.store.last().getHash())) {
+          throw new IllegalArgumentException();
+        } // if
+        this.extend(blk);
+      } finally {
+        this.lock.unlockWrite(stamp);
+      } // try/finally
     } catch (NoSuchAlgorithmException e) {
       System.err.println("Invalid algorithm");
-    } // try/catch
+    } finally {
+      ChainMetrics.GLOBAL.appending.record(System.nanoTime() - start);
+    } // try/catch/finally
   } // append()
 
   /**
@@ -181,32 +698,118 @@ public class BlockChain implements Iterable<Transaction> {
    *   is removed).
    */
   public boolean removeLast() {
-    if (this.size == 1) {
-      return false;
-    } else {
-      Node removed = this.last;
-      this.last = this.last.prev;
-      this.last.next = null;
-      this.size--;
+    long stamp = this.lock.writeLock();
+    try {
+      if (this.store.size() == 1) {
+        return false;
+      } // if
+      this.truncate(this.store.size() - 2);
+      return true;
+    } finally {
+      this.lock.unlockWrite(stamp);
+    } // try/finally
+  } // removeLast()
 
-      String source = removed.getBlock().getTransaction().getSource();
-      String target = removed.getBlock().getTransaction().getTarget();
-      int amount = removed.getBlock().getTransaction().getAmount();
+  /**
+   * Remove every block after a given height. The balances are rebuilt
+   * from the nearer of the current balances and the nearest snapshot,
+   * so this takes time proportional to the blocks removed or to the
+   * distance from that snapshot, whichever is less.
+   *
+   * @param height
+   *   The height of the block that becomes the last block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no block at that height.
+   */
+  public void truncateTo(int height) {
+    long stamp = this.lock.writeLock();
+    try {
+      this.truncate(height);
+    } finally {
+      this.lock.unlockWrite(stamp);
+    } // try/finally
+  } // truncateTo(int)
 
-      try {
-        if (!source.equals("")) {
-          balances.set(source, balances.get(source) + amount);
-          balances.set(target, balances.get(target) - amount);
-        } else {
-          balances.set(target, balances.get(target) - amount);
-        } // if/else
-      } catch (Exception e) {
-        System.err.println("Key exception");
-      } // try/catch
+  /**
+   * Replace every block after a given height with other blocks, in one
+   * step: readers see either the old blocks or the new ones. Only the
+   * balances of the blocks that change are undone and replayed.
+   *
+   * @param height
+   *   The height of the last block to keep.
+   * @param replacements
+   *   The blocks that follow it, in order.
+   *
+   * @throws IllegalArgumentException
+   *   If the hash of one of the blocks is not valid or not right for its
+   *   contents, or the blocks do not follow on from each other. The
+   *   chain is unchanged.
+   * @throws IndexOutOfBoundsException
+   *   If there is no block at that height.
+   */
+  public void replaceAfter(int height, List<Block> replacements) {
+    try {
+      for (Block blk : replacements) {
+        if (!validator.isValid(blk.getHash()) || !blk.getHash().equals(blk.computeHash())) {
+          throw new IllegalArgumentException("Invalid block: " + blk);
+        } // if
+      } // for
+    } catch (NoSuchAlgorithmException e) {
+      System.err.println("Invalid algorithm");
+      return;
+    } // try/catch
+    long stamp = this.lock.writeLock();
+    try {
+      Hash prev = this.store.get(height).getHash();
+      for (Block blk : replacements) {
+        if (!blk.getPrevHash().equals(prev)) {
+          throw new IllegalArgumentException("Block does not follow on: " + blk);
+        } // if
+        prev = blk.getHash();
+      } // for
+      this.truncate(height);
+      for (Block blk : replacements) {
+        this.extend(blk);
+      } // for
+    } finally {
+      this.lock.unlockWrite(stamp);
+    } // try/finally
+  } // replaceAfter(int, List<Block>)
 
-      return true;
-    } // if/else
-  } // removeLast()
+  /**
+   * Find everyone's balances as of a given block, starting from the
+   * nearer of the current balances and the nearest snapshot.
+   *
+   * @param height
+   *   The height of the block.
+   *
+   * @return the balances after that block, which the caller may change.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no block at that height.
+   */
+  public StringLongMap balancesAt(int height) {
+    long stamp = this.lock.readLock();
+    try {
+      int tip = this.store.size() - 1;
+      if ((height < 0) || (height > tip)) {
+        throw new IndexOutOfBoundsException("No block at height " + height + " of " + (tip + 1));
+      } // if
+      int snap = this.nearestSnapshot(height);
+      StringLongMap result;
+      if (tip - height < Math.abs(snap * SNAPSHOT_INTERVAL - height)) {
+        result = this.balances.clone();
+        this.roll(result, tip, height);
+      } else {
+        result = this.snapshots.get(snap).clone();
+        this.roll(result, snap * SNAPSHOT_INTERVAL, height);
+      } // if/else
+      return result;
+    } finally {
+      this.lock.unlockRead(stamp);
+    } // try/finally
+  } // balancesAt(int)
 
   /**
    * Get the hash of the last block in the chain.
@@ -214,7 +817,7 @@ public class BlockChain implements Iterable<Transaction> {
    * @return the hash of the last sblock in the chain.
    */
   public Hash getHash() {
-    return this.last.getBlock().getHash();
+    return this.read(() -> this.store.last().getHash());
   } // getHash()
 
   /**
@@ -223,147 +826,161 @@ public class BlockChain implements Iterable<Transaction> {
    * previous hash field, (c) that every block has a hash that is correct
    * for its contents, and (d) that every block has a valid hash.
    *
+   * Blocks are not rehashed once they have been verified; use
+   * isCorrect(true) to verify every block again.
+   *
    * @return true if the blockchain is correct and false otherwise.
    */
   public boolean isCorrect() {
-    // source is in balances and has >= money than the amount
-    // compare current prevHash to prev hash
-    // compare computeHash to hash
-    // check hash with validator
-    Block current;
-    Block previous;
-
-    Iterator<Block> blocks = this.blocks();
-
-    if (this.size == 1) {
-      return true;
-    } // if
-    previous = blocks.next();
-    //blocks.next();
-
-    while (blocks.hasNext()) {
-      current = blocks.next();
-      String source = current.getTransaction().getSource();
-      if (current.getTransaction().getAmount() < 0) {
-        return false;
-      } // if
-      if (!source.equals("")) {
-        try {
-          if ((!balances.hasKey(source)) || (balances.get(source) < 0)) {
-            return false;
-          } // if
-        } catch (KeyNotFoundException e) {
-          System.err.println("Could not find the key");
-        } // try/catch
-      } // if
-
-      if (!previous.getHash().equals(current.getPrevHash())) {
-        return false;
-      } // if
-
-      try {
-        if (!current.getHash().equals(current.computeHash())) {
-          return false;
-        } // if
-      } catch (NoSuchAlgorithmException e) {
-        System.err.println("Invalid Algorithm");
-      } // try/catch
-
-      if (!validator.isValid(current.getHash())) {
-        return false;
-      } // if
-      previous = current;
-    } // while
-    return true;
+    return this.isCorrect(false);
   } // isCorrect()
 
   /**
-   * Determine if the blockchain is correctif (current.getTransaction().getAmount() < 0) {
-        return false;
-      } in that (a) the balances are
+   * Determine if the blockchain is correct, as in isCorrect().
+   *
+   * @param deep
+   *   True to verify every block again, even those already verified
+   *   (e.g., in case one has been tampered with in memory).
+   *
+   * @return true if the blockchain is correct and false otherwise.
+   */
+  public boolean isCorrect(boolean deep) {
+    return this.validate(deep).isCorrect();
+  } // isCorrect(boolean)
+
+  /**
+   * Determine if the blockchain is correct in that (a) the balances are
    * legal/correct at every step, (b) that every block has a correct
    * previous hash field, (c) that every block has a hash that is correct
    * for its contents, and (d) that every block has a valid hash.
    *
+   * Blocks are not rehashed once they have been verified; use
+   * check(true) to verify every block again.
+   *
    * @throws Exception
    *   If things are wrong at any block.
    */
   public void check() throws Exception {
-    Block current;
-    Block previous;
-
-    Iterator<Block> blocks = this.blocks();
-
-    if (this.size > 1) {
-      previous = blocks.next();
-      //blocks.next();
-
-      while (blocks.hasNext()) {
-        current = blocks.next();
-        String source = current.getTransaction().getSource();
+    this.check(false);
+  } // check()
 
-        if (current.getTransaction().getAmount() < 0) {
-          throw new Exception("Negative amount in transaction: "
-           + current.getTransaction().getAmount());
-        } // if
+  /**
+   * Check the blockchain, as in check().
+   *
+   * @param deep
+   *   True to verify every block again, even those already verified.
+   *
+   * @throws Exception
+   *   If things are wrong at any block.
+   */
+  public void check(boolean deep) throws Exception {
+    ValidationReport report = this.validate(deep);
+    if (!report.isCorrect()) {
+      throw new Exception(report.getProblem());
+    } // if
+  } // check(boolean)
 
-        if (!source.equals("")) {
-          try {
-            if ((!balances.hasKey(source))) {
-              throw new Exception("Unknown source of transaction: " + source);
-            } // if
-            if ((balances.get(source) < 0)) {
-              throw new Exception("Negative balance for: " + source);
-            } // if
-          } catch (KeyNotFoundException e) {
-            System.err.println("Could not find the key");
-          } // try/catch
-        } // if
+  /**
+   * Check the blockchain in one pass, replaying the balances block by
+   * block, and report the first problem. A source that spends more than
+   * it has is reported at the block where it does so, even if later
+   * deposits would cover it.
+   *
+   * @param deep
+   *   True to verify every block again, even those already verified.
+   *
+   * @return the report.
+   */
+  public ValidationReport validate(boolean deep) {
+    long start = System.nanoTime();
+    synchronized (this.checking) {
+      long stamp = this.lock.readLock();
+      try {
+        int from = this.resume(deep);
+        Problem problem = this.findProblem();
+        int to = (problem == null) ? this.store.size() - 1 : problem.height;
+        return new ValidationReport(problem, to - from, this.store.size());
+      } finally {
+        this.lock.unlockRead(stamp);
+        ChainMetrics.GLOBAL.checking.record(System.nanoTime() - start);
+      } // try/finally
+    } // synchronized
+  } // validate(boolean)
 
-        if (!previous.getHash().equals(current.getPrevHash())) {
-          throw new Exception("Previous hash does not match with prevHash of the current one."
-            + "prevHash of current: " + current.getPrevHash()
-            + ". hash of previous: " + previous.getHash());
-        } // if
+  /**
+   * Determine if the blockchain is correct, as in isCorrect(true), but
+   * checking blocks on the miner's pool, in parallel with the replay of
+   * the balances.
+   *
+   * @return true if the blockchain is correct and false otherwise.
+   */
+  public boolean isCorrectParallel() {
+    return this.validateParallel().isCorrect();
+  } // isCorrectParallel()
 
-        try {
-          if (!current.getHash().equals(current.computeHash())) {
-            throw new Exception("The provided hash does not match the hash generated by "
-             + "the contents");
-          } // if
-        } catch (NoSuchAlgorithmException e) {
-          System.err.println("Invalid Algorithm");
-        } // try/catch
-
-        if (!validator.isValid(current.getHash())) {
-          throw new Exception("Invalid Hash. Hash: " + current.getHash());
-        } // if
-        previous = current;
-      } // while
+  /**
+   * Check the blockchain, as in check(true), but checking blocks on the
+   * miner's pool, in parallel with the replay of the balances. Reports
+   * the same problem as check(true).
+   *
+   * @throws Exception
+   *   If things are wrong at any block.
+   */
+  public void checkParallel() throws Exception {
+    ValidationReport report = this.validateParallel();
+    if (!report.isCorrect()) {
+      throw new Exception(report.getProblem());
     } // if
-  } // check()
+  } // checkParallel()
+
+  /**
+   * Check the blockchain, as in validate(true), but checking blocks on
+   * the miner's pool, in parallel with the replay of the balances.
+   * Reports the same problem as validate(true).
+   *
+   * @return the report.
+   */
+  public ValidationReport validateParallel() {
+    long start = System.nanoTime();
+    synchronized (this.checking) {
+      long stamp = this.lock.readLock();
+      try {
+        int from = this.resume(true);
+        Problem problem = this.findProblemParallel();
+        int to = (problem == null) ? this.store.size() - 1 : problem.height;
+        return new ValidationReport(problem, to - from, this.store.size());
+      } finally {
+        this.lock.unlockRead(stamp);
+        ChainMetrics.GLOBAL.checking.record(System.nanoTime() - start);
+      } // try/finally
+    } // synchronized
+  } // validateParallel()
 
   /**
    * Return an iterator of all the people who participated in the
-   * system.
+   * system. If blocks are removed while iterating, it stops early rather
+   * than return people who no longer appear in the chain.
    *
    * @return an iterator of all the people in the system.
    */
   public Iterator<String> users() {
+    int count = (int) this.readLong(this.userList::size);
     return new Iterator<String>() {
 
       int cur = 0;
       String update = "";
 
       public boolean hasNext() {
-        return (this.cur < BlockChain.this.userList.size());
+        return (this.cur < count)
+            && (this.cur < BlockChain.this.readLong(BlockChain.this.userList::size));
       } // hasNext()
 
       public String next() {
         if (!this.hasNext()) {
           throw new NoSuchElementException();
         } else {
-          this.update = BlockChain.this.userList.get(this.cur);
+          int i = this.cur;
+          this.update = BlockChain.this.read(() -> BlockChain.this.userList.get(i));
           this.cur++;
           return this.update;
         } // if/else
@@ -372,59 +989,165 @@ public class BlockChain implements Iterable<Transaction> {
   } // users()
 
   /**
-   * Find one user's balance.
+   * Find one user's balance. Balances are kept up to date by append and
+   * removeLast, so this takes constant time.
    *
    * @param user
    *   The user whose balance we want to find.
    *
    * @return that user's balance (or 0, if the user is not in the system).
    */
-  public int balance(String user) {
-    if (this.balances.hasKey(user)) {
-      Iterator<Block> blocks = this.blocks();
-      Block current;
-      int userBal = 0;
-      while (blocks.hasNext()) {
-        current = blocks.next();
-        if (current.getTransaction().getSource().equals(user)) {
-          userBal = userBal - current.getTransaction().getAmount();
-        } // if
-        if (current.getTransaction().getTarget().equals(user)) {
-          userBal = userBal + current.getTransaction().getAmount();
-        } // if
-      } // while
-      return userBal;
-    } else {
-      return 0;
-    } // if/else
+  public long balance(String user) {
+    return this.readLong(() -> this.balances.get(user));
   } // balance()
 
   /**
-   * Get an interator for all the blocks in the chain.
+   * Find the balances of several users at once.
+   *
+   * @param users
+   *   The users whose balances we want to find.
+   *
+   * @return their balances, in the same order (0 for users not in the
+   *   system).
+   */
+  public long[] balances(String... users) {
+    return this.read(() -> {
+      long[] result = new long[users.length];
+      for (int i = 0; i < users.length; i++) {
+        result[i] = this.balances.get(users[i]);
+      } // for
+      return result;
+    });
+  } // balances(String...)
+
+  /**
+   * Get the block at a given height.
+   *
+   * @param height
+   *   The height of the block (0 for the first block).
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If height is negative or at least getSize().
+   */
+  public Block getBlock(int height) {
+    return this.read(() -> this.store.get(height));
+  } // getBlock(int)
+
+  /**
+   * Find the block with a given hash.
+   *
+   * @param hash
+   *   The hash of the block.
+   *
+   * @return the block, or null if no block in the chain has that hash.
+   */
+  public Block findByHash(Hash hash) {
+    return this.read(() -> {
+      Integer height = this.heights.getOrDefault(hash, null);
+      return (height == null) ? null : this.store.get(height);
+    });
+  } // findByHash(Hash)
+
+  /**
+   * Find the height of the block with a given hash.
+   *
+   * @param hash
+   *   The hash of the block.
+   *
+   * @return the height, or -1 if no block in the chain has that hash.
+   */
+  public int heightOf(Hash hash) {
+    return (int) this.readLong(() -> this.heights.getOrDefault(hash, -1));
+  } // heightOf(Hash)
+
+  /**
+   * Determine whether some block in the chain has a given hash.
+   *
+   * @param hash
+   *   The hash of the block.
+   *
+   * @return true if some block has that hash and false otherwise.
+   */
+  public boolean containsHash(Hash hash) {
+    return this.read(() -> this.heights.containsKey(hash));
+  } // containsHash(Hash)
+
+  /**
+   * Get an interator for all the blocks in the chain, as it is now.
+   * Blocks appended or removed later are not seen.
    *
    * @return an iterator for all the blocks in the chain.
    */
   public Iterator<Block> blocks() {
-    return new Iterator<Block>() {
-      // FIELDS
-      Node next = BlockChain.this.first;
-      Node update = null;
+    return this.read(this.store::iterator);
+  } // blocks()
 
-      public boolean hasNext() {
-        return (this.next != null);
-      } // hasNext()
+  /**
+   * Get an iterator for some of the blocks in the chain, as it is now.
+   * It starts directly at the first block, so it takes time in
+   * proportion to the number of blocks visited.
+   *
+   * @param fromHeight
+   *   The height of the first block.
+   * @param toHeight
+   *   The height just past the last block.
+   *
+   * @return an iterator for the blocks, from the first to the last.
+   *
+   * @throws IndexOutOfBoundsException
+   *   Unless 0 <= fromHeight <= toHeight <= getSize().
+   */
+  public Iterator<Block> blocks(int fromHeight, int toHeight) {
+    return this.read(() -> this.store.iterator(fromHeight, toHeight, false));
+  } // blocks(int, int)
 
-      public Block next() {
-        if (!this.hasNext()) {
-          throw new NoSuchElementException();
-        } else {
-          this.update = this.next;
-          this.next = this.next.getNext();
-          return this.update.getBlock();
-        } // if/else
-      } // next()
-    };
-  } // blocks()
+  /**
+   * Get an iterator for all the blocks in the chain, as it is now, from
+   * the last to the first.
+   *
+   * @return an iterator for the blocks, from the last to the first.
+   */
+  public Iterator<Block> blocksDescending() {
+    return this.read(() -> this.store.iterator(0, this.store.size(), true));
+  } // blocksDescending()
+
+  /**
+   * Get an iterator for the most recent blocks in the chain, as it is
+   * now, from the last back.
+   *
+   * @param n
+   *   The most blocks to visit.
+   *
+   * @return an iterator for the last n blocks (or all the blocks, if
+   *   there are fewer), from the last back.
+   */
+  public Iterator<Block> latest(int n) {
+    return this.read(() -> {
+      int size = this.store.size();
+      return this.store.iterator(Math.max(0, size - Math.max(0, n)), size, true);
+    });
+  } // latest(int)
+
+  /**
+   * Get a stream of all the blocks in the chain, as it is now. The
+   * stream splits well, so parallel streams spread across cores.
+   *
+   * @return a stream of the blocks, from the first to the last.
+   */
+  public Stream<Block> blockStream() {
+    return StreamSupport.stream(this.read(this.store::spliterator), false);
+  } // blockStream()
+
+  /**
+   * Get a stream of all the transactions in the chain, as it is now.
+   *
+   * @return a stream of the transactions, from the first to the last.
+   */
+  public Stream<Transaction> transactionStream() {
+    return this.blockStream().map(Block::getTransaction);
+  } // transactionStream()
 
   /**
    * Get an interator for all the transactions in the chain.
@@ -433,24 +1156,124 @@ public class BlockChain implements Iterable<Transaction> {
    */
   public Iterator<Transaction> iterator() {
     return new Iterator<Transaction>() {
-      // FIELDS
-      Node next = BlockChain.this.first;
-      Node update = null;
+      Iterator<Block> blocks = BlockChain.this.blocks();
 
       public boolean hasNext() {
-        return (this.next != null);
+        return this.blocks.hasNext();
       } // hasNext()
 
       public Transaction next() {
-        if (!this.hasNext()) {
-          throw new NoSuchElementException();
-        } else {
-          this.update = this.next;
-          this.next = this.next.getNext();
-          return this.update.getBlock().getTransaction();
-        } // if/else
+        return this.blocks.next().getTransaction();
       } // next()
     };
   } // iterator()
 
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Apply a transaction to some balances, or undo it.
+   *
+   * @param ledger
+   *   The balances.
+   * @param t
+   *   The transaction.
+   * @param sign
+   *   1 to apply the transaction or -1 to undo it.
+   */
+  static void replay(StringLongMap ledger, Transaction t, int sign) {
+    long amount = sign * (long) t.getAmount();
+    if (!t.getSource().equals("")) {
+      ledger.addTo(t.getSource(), -amount);
+    } // if
+    ledger.addTo(t.getTarget(), amount);
+  } // replay(StringLongMap, Transaction, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Something wrong with a block. Problems are ordered by the height of
+   * the block and then by the order in which we check things, so the
+   * first problem is the same whichever way we find it.
+   */
+  static class Problem {
+    /**
+     * The kind of problem for a negative amount.
+     */
+    static final int AMOUNT = 0;
+
+    /**
+     * The kind of problem for a bad source or balance.
+     */
+    static final int BALANCE = 1;
+
+    /**
+     * The kind of problem for a wrong previous hash.
+     */
+    static final int LINK = 2;
+
+    /**
+     * The kind of problem for a hash that does not match the contents.
+     */
+    static final int HASH = 3;
+
+    /**
+     * The kind of problem for a hash the validator rejects.
+     */
+    static final int VALIDATOR = 4;
+
+    /**
+     * The height of the block.
+     */
+    int height;
+
+    /**
+     * The kind of problem.
+     */
+    int kind;
+
+    /**
+     * A description of the problem.
+     */
+    String message;
+
+    /**
+     * Create a new problem.
+     *
+     * @param blockHeight
+     *   The height of the block.
+     * @param problemKind
+     *   The kind of problem.
+     * @param description
+     *   A description of the problem.
+     */
+    Problem(int blockHeight, int problemKind, String description) {
+      this.height = blockHeight;
+      this.kind = problemKind;
+      this.message = description;
+    } // Problem(int, int, String)
+
+    /**
+     * Pick the earlier of two problems.
+     *
+     * @param a
+     *   One problem (or null).
+     * @param b
+     *   Another problem (or null).
+     *
+     * @return the earlier problem, or null if both are null.
+     */
+    static Problem first(Problem a, Problem b) {
+      if ((a == null) || (b == null)) {
+        return (a == null) ? b : a;
+      } else if ((a.height != b.height) ? (a.height < b.height) : (a.kind <= b.kind)) {
+        return a;
+      } else {
+        return b;
+      } // if/else
+    } // first(Problem, Problem)
+  } // class Problem
 } // class BlockChain
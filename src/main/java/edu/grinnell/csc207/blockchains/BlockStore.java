@@ -0,0 +1,441 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The blocks of a chain, by height (0 for the first block). Blocks live
+ * in fixed-size segments, so we can find any block in constant time and
+ * walk them in order through contiguous arrays, and growing the store
+ * never copies the blocks already in it (only the small directory of
+ * segments).
+ *
+ * A store is not thread-safe; BlockChain guards it with its lock.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+class BlockStore implements Iterable<Block> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The base-2 log of the number of blocks in a segment.
+   */
+  static final int SEGMENT_BITS = 10;
+
+  /**
+   * The number of blocks in a segment.
+   */
+  static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+  /**
+   * The mask that gives a block's index within its segment.
+   */
+  static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The segments (null past the last one in use, apart from one spare).
+   */
+  Block[][] segments;
+
+  /**
+   * The number of blocks.
+   */
+  int size;
+
+  /**
+   * The number of segments, from the first, that an iterator or
+   * spliterator may still be reading. Truncating never changes these
+   * segments (or their places in the directory) in place: it replaces
+   * the directory and any of them it changes, so the blocks an iterator
+   * sees never change under it. Other segments are cleared in place.
+   */
+  AtomicInteger shared;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty store.
+   */
+  BlockStore() {
+    this.segments = new Block[1][];
+    this.size = 0;
+    this.shared = new AtomicInteger(0);
+  } // BlockStore()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks.
+   *
+   * @return the number of blocks.
+   */
+  int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get a block.
+   *
+   * @param height
+   *   The height of the block, between 0 (inclusive) and size()
+   *   (exclusive).
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If there is no block at that height.
+   */
+  Block get(int height) {
+    if ((height < 0) || (height >= this.size)) {
+      throw new IndexOutOfBoundsException("No block at height " + height + " of " + this.size);
+    } // if
+    return this.segments[height >>> SEGMENT_BITS][height & SEGMENT_MASK];
+  } // get(int)
+
+  /**
+   * Get the last block.
+   *
+   * @return the last block.
+   *
+   * @throws IndexOutOfBoundsException
+   *   If the store is empty.
+   */
+  Block last() {
+    return this.get(this.size - 1);
+  } // last()
+
+  /**
+   * Add a block to the end.
+   *
+   * @param blk
+   *   The block to add.
+   */
+  void add(Block blk) {
+    int seg = this.size >>> SEGMENT_BITS;
+    if (seg == this.segments.length) {
+      this.segments = Arrays.copyOf(this.segments, this.segments.length * 2);
+    } // if
+    if (this.segments[seg] == null) {
+      this.segments[seg] = new Block[SEGMENT_SIZE];
+    } // if
+    this.segments[seg][this.size & SEGMENT_MASK] = blk;
+    this.size++;
+  } // add(Block)
+
+  /**
+   * Remove blocks from the end, keeping only the first few.
+   *
+   * @param newSize
+   *   The number of blocks to keep, between 0 and size().
+   *
+   * @throws IndexOutOfBoundsException
+   *   If newSize is out of range.
+   */
+  void truncate(int newSize) {
+    if ((newSize < 0) || (newSize > this.size)) {
+      throw new IndexOutOfBoundsException("Cannot truncate " + this.size + " to " + newSize);
+    } // if
+    int oldSize = this.size;
+    int keep = (newSize + SEGMENT_MASK) >>> SEGMENT_BITS;
+    int used = (oldSize + SEGMENT_MASK) >>> SEGMENT_BITS;
+    // The segments before this one stay as they are.
+    int unchanged = newSize >>> SEGMENT_BITS;
+    if (unchanged < this.shared.get()) {
+      // Iterators may still be walking the removed blocks, so the
+      // segments they see are replaced rather than cleared. Only the
+      // blocks we keep are copied, and the copies are not shared.
+      Block[][] fresh = this.segments.clone();
+      if ((newSize & SEGMENT_MASK) != 0) {
+        fresh[keep - 1] = new Block[SEGMENT_SIZE];
+        System.arraycopy(this.segments[keep - 1], 0, fresh[keep - 1], 0,
+            newSize & SEGMENT_MASK);
+      } // if
+      for (int seg = keep; seg < fresh.length; seg++) {
+        fresh[seg] = null;
+      } // for
+      this.segments = fresh;
+      this.size = newSize;
+      this.shared.set(unchanged);
+      return;
+    } // if
+
+    this.size = newSize;
+    // Let go of the removed blocks, but keep one segment past the end,
+    // so that appending and removing at a boundary does not thrash.
+    if ((newSize & SEGMENT_MASK) != 0) {
+      int end = Math.min(oldSize, keep << SEGMENT_BITS);
+      Arrays.fill(this.segments[keep - 1], newSize & SEGMENT_MASK,
+          ((end - 1) & SEGMENT_MASK) + 1, null);
+    } // if
+    if (keep < used) {
+      Arrays.fill(this.segments[keep], null);
+    } // if
+    for (int seg = keep + 1; (seg < this.segments.length) && (this.segments[seg] != null); seg++) {
+      this.segments[seg] = null;
+    } // for
+  } // truncate(int)
+
+  /**
+   * Iterate the blocks from the first to the last, as they were when the
+   * iterator was created. Blocks added or removed later are not seen.
+   *
+   * @return an iterator for the blocks.
+   */
+  public Iterator<Block> iterator() {
+    return new Walk(this.share(this.size), 0, this.size, 1);
+  } // iterator()
+
+  /**
+   * Iterate some of the blocks, as they were when the iterator was
+   * created, starting directly at the first one we want.
+   *
+   * @param from
+   *   The height of the first block.
+   * @param to
+   *   The height just past the last block.
+   * @param descending
+   *   True to go from the last of these blocks to the first.
+   *
+   * @return an iterator for the blocks.
+   *
+   * @throws IndexOutOfBoundsException
+   *   Unless 0 <= from <= to <= size().
+   */
+  Iterator<Block> iterator(int from, int to, boolean descending) {
+    Objects.checkFromToIndex(from, to, this.size);
+    Block[][] blocks = this.share(to);
+    if (descending) {
+      return new Walk(blocks, to - 1, from - 1, -1);
+    } // if
+    return new Walk(blocks, from, to, 1);
+  } // iterator(int, int, boolean)
+
+  /**
+   * Split the blocks from the first to the last, as they were when the
+   * spliterator was created, for use in (parallel) streams.
+   *
+   * @return a spliterator for the blocks.
+   */
+  public Spliterator<Block> spliterator() {
+    return new Blocks(this.share(this.size), 0, this.size);
+  } // spliterator()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Note that an iterator or spliterator will read the segments that
+   * hold some blocks.
+   *
+   * @param end
+   *   The height just past the last block it will read.
+   *
+   * @return the directory of segments for it to read.
+   */
+  Block[][] share(int end) {
+    this.shared.accumulateAndGet((end + SEGMENT_MASK) >>> SEGMENT_BITS, Math::max);
+    return this.segments;
+  } // share(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A walk over a range of blocks from a store, in either direction.
+   */
+  static class Walk implements Iterator<Block> {
+    /**
+     * The segments the blocks are in.
+     */
+    Block[][] segments;
+
+    /**
+     * The height of the next block.
+     */
+    int next;
+
+    /**
+     * The height just past the last block (in the direction we walk).
+     */
+    int stop;
+
+    /**
+     * 1 to walk up the chain or -1 to walk down it.
+     */
+    int step;
+
+    /**
+     * Create a walk.
+     *
+     * @param blocks
+     *   The segments the blocks are in.
+     * @param first
+     *   The height of the first block.
+     * @param past
+     *   The height just past the last block.
+     * @param direction
+     *   1 to walk up the chain or -1 to walk down it.
+     */
+    Walk(Block[][] blocks, int first, int past, int direction) {
+      this.segments = blocks;
+      this.next = first;
+      this.stop = past;
+      this.step = direction;
+    } // Walk(Block[][], int, int, int)
+
+    /**
+     * Determine if there are more blocks.
+     *
+     * @return true if there are and false otherwise.
+     */
+    public boolean hasNext() {
+      return this.next != this.stop;
+    } // hasNext()
+
+    /**
+     * Get the next block.
+     *
+     * @return the block.
+     *
+     * @throws NoSuchElementException
+     *   If there are no more blocks.
+     */
+    public Block next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      } // if
+      Block blk = this.segments[this.next >>> SEGMENT_BITS][this.next & SEGMENT_MASK];
+      this.next += this.step;
+      return blk;
+    } // next()
+  } // class Walk
+
+  /**
+   * A range of blocks from a store, which splits into halves along
+   * segment boundaries where it can.
+   */
+  static class Blocks implements Spliterator<Block> {
+    /**
+     * The segments the blocks are in.
+     */
+    Block[][] segments;
+
+    /**
+     * The height of the next block.
+     */
+    int next;
+
+    /**
+     * The height just past the last block.
+     */
+    int end;
+
+    /**
+     * Create a range of blocks.
+     *
+     * @param blocks
+     *   The segments the blocks are in.
+     * @param from
+     *   The height of the first block.
+     * @param to
+     *   The height just past the last block.
+     */
+    Blocks(Block[][] blocks, int from, int to) {
+      this.segments = blocks;
+      this.next = from;
+      this.end = to;
+    } // Blocks(Block[][], int, int)
+
+    /**
+     * Handle the next block, if there is one.
+     *
+     * @param action
+     *   What to do with the block.
+     *
+     * @return true if there was a block and false otherwise.
+     */
+    public boolean tryAdvance(Consumer<? super Block> action) {
+      if (this.next >= this.end) {
+        return false;
+      } // if
+      action.accept(this.segments[this.next >>> SEGMENT_BITS][this.next & SEGMENT_MASK]);
+      this.next++;
+      return true;
+    } // tryAdvance(Consumer<? super Block>)
+
+    /**
+     * Handle all the remaining blocks, a segment at a time.
+     *
+     * @param action
+     *   What to do with each block.
+     */
+    public void forEachRemaining(Consumer<? super Block> action) {
+      int i = this.next;
+      int stop = this.end;
+      this.next = stop;
+      while (i < stop) {
+        Block[] segment = this.segments[i >>> SEGMENT_BITS];
+        int segmentStop = Math.min(stop, (i | SEGMENT_MASK) + 1);
+        for (; i < segmentStop; i++) {
+          action.accept(segment[i & SEGMENT_MASK]);
+        } // for
+      } // while
+    } // forEachRemaining(Consumer<? super Block>)
+
+    /**
+     * Split off the first half of the remaining blocks.
+     *
+     * @return the first half, or null if there are too few blocks to
+     *   split.
+     */
+    public Spliterator<Block> trySplit() {
+      int mid = (this.next + this.end) >>> 1;
+      if (this.end - this.next >= 2 * SEGMENT_SIZE) {
+        mid &= ~SEGMENT_MASK;
+      } // if
+      if (mid <= this.next) {
+        return null;
+      } // if
+      Blocks first = new Blocks(this.segments, this.next, mid);
+      this.next = mid;
+      return first;
+    } // trySplit()
+
+    /**
+     * Get the number of remaining blocks.
+     *
+     * @return the number of blocks.
+     */
+    public long estimateSize() {
+      return this.end - this.next;
+    } // estimateSize()
+
+    /**
+     * Describe the blocks: they are in order, their number is known
+     * (before and after splitting), and they do not change.
+     *
+     * @return the characteristics.
+     */
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    } // characteristics()
+  } // class Blocks
+} // class BlockStore
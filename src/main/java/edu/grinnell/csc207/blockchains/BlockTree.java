@@ -0,0 +1,428 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.NullKeyException;
+
+/**
+ * A chain together with the branches that compete with it. Blocks may
+ * be added anywhere in the tree, as long as we have the block before
+ * them. The chain always holds the branch with the most work, where a
+ * block's work is the number of hashes we expect it took to meet the
+ * chain's target (so a lucky hash counts no more than any other); when
+ * a side branch gets more work than the chain, the two swap places, and
+ * only the blocks after the fork are undone and replayed.
+ *
+ * Side branches that fork more than PRUNE_DEPTH blocks below the end of
+ * the chain are dropped, so blocks that build on them are turned away.
+ *
+ * The tree expects to be the only thing that changes its chain. (If the
+ * chain is changed elsewhere, the tree recounts its work.)
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class BlockTree {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most work we count for one block, so that totals fit in a long.
+   */
+  static final long MAX_BLOCK_WORK = 1L << 32;
+
+  /**
+   * How far below the end of the chain a side branch may fork before we
+   * drop it.
+   */
+  static final int PRUNE_DEPTH = 128;
+
+  /**
+   * How far the end of the chain moves between looks for side branches
+   * to drop.
+   */
+  static final int PRUNE_INTERVAL = PRUNE_DEPTH / 4;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chain, which holds the branch with the most work.
+   */
+  BlockChain chain;
+
+  /**
+   * The work of each block, which depends only on the chain's validator.
+   */
+  long blockWork;
+
+  /**
+   * The blocks that are not in the chain, by hash.
+   */
+  AssociativeArray<Hash, Branch> branches;
+
+  /**
+   * Every block kept in branches since we last pruned them (including
+   * some that have since moved into the chain).
+   */
+  ArrayList<Branch> kept;
+
+  /**
+   * The height of the end of the chain when we last pruned the branches.
+   */
+  int prunedAt;
+
+  /**
+   * The total work of the chain up to each height.
+   */
+  long[] totals;
+
+  /**
+   * The number of heights in totals that are filled in.
+   */
+  int counted;
+
+  /**
+   * The hash of the last block counted in totals.
+   */
+  Hash lastCounted;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a tree around a chain, with no side branches.
+   *
+   * @param main
+   *   The chain.
+   */
+  public BlockTree(BlockChain main) {
+    this.chain = main;
+    this.blockWork = work(main.validator);
+    this.branches = new AssociativeArray<Hash, Branch>();
+    this.kept = new ArrayList<Branch>();
+    this.prunedAt = 0;
+    this.totals = new long[16];
+    this.counted = 0;
+    this.catchUp();
+  } // BlockTree(BlockChain)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a block to the tree. If it makes its branch the one with the
+   * most work, that branch becomes the chain.
+   *
+   * @param blk
+   *   The block.
+   *
+   * @return true if the block is now the last block of the chain, or
+   *   false if it is on a side branch (or was already in the tree).
+   *
+   * @throws IllegalArgumentException
+   *   If the block's hash is not valid or not right for its contents, or
+   *   the block before it is not in the tree.
+   */
+  public synchronized boolean add(Block blk) {
+    this.catchUp();
+    Hash hash = blk.getHash();
+    if (this.chain.containsHash(hash) || this.branches.containsKey(hash)) {
+      return false;
+    } // if
+    if (blk.getPrevHash().equals(this.lastCounted)) {
+      this.chain.append(blk);
+      this.count(hash);
+      this.prune();
+      return true;
+    } // if
+
+    int parentHeight = this.chain.heightOf(blk.getPrevHash());
+    long parentTotal;
+    if (parentHeight >= 0) {
+      parentTotal = this.totals[parentHeight];
+    } else {
+      Branch parent = this.branches.getOrDefault(blk.getPrevHash(), null);
+      if (parent == null) {
+        throw new IllegalArgumentException("Unknown previous block: " + blk.getPrevHash());
+      } // if
+      parentHeight = parent.height;
+      parentTotal = parent.total;
+    } // if/else
+    this.checkHash(blk);
+
+    Branch branch = new Branch(blk, parentHeight + 1, parentTotal + this.blockWork);
+    this.keep(branch);
+    if (branch.total > this.work()) {
+      this.reorganize(branch);
+      this.prune();
+      return true;
+    } // if
+    return false;
+  } // add(Block)
+
+  /**
+   * Get the chain, which holds the branch with the most work.
+   *
+   * @return the chain.
+   */
+  public BlockChain getChain() {
+    return this.chain;
+  } // getChain()
+
+  /**
+   * Get the total work of the chain.
+   *
+   * @return the total work.
+   */
+  public synchronized long work() {
+    this.catchUp();
+    return this.totals[this.counted - 1];
+  } // work()
+
+  /**
+   * Get the number of blocks on side branches.
+   *
+   * @return the number of blocks.
+   */
+  public synchronized int sideBlocks() {
+    return this.branches.size();
+  } // sideBlocks()
+
+  /**
+   * Find a block anywhere in the tree.
+   *
+   * @param hash
+   *   The hash of the block.
+   *
+   * @return the block, or null if no block in the tree has that hash.
+   */
+  public synchronized Block findByHash(Hash hash) {
+    Block blk = this.chain.findByHash(hash);
+    if (blk == null) {
+      Branch branch = this.branches.getOrDefault(hash, null);
+      blk = (branch == null) ? null : branch.block;
+    } // if
+    return blk;
+  } // findByHash(Hash)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make a side branch the chain, and keep the blocks it replaces as a
+   * side branch. If the chain will not take the branch, nothing changes.
+   *
+   * @param branch
+   *   The last block of the side branch.
+   */
+  void reorganize(Branch branch) {
+    List<Block> path = new ArrayList<Block>();
+    path.add(branch.block);
+    int fork = this.chain.heightOf(branch.block.getPrevHash());
+    while (fork < 0) {
+      Block next = this.branches.getOrDefault(path.get(path.size() - 1).getPrevHash(), null).block;
+      path.add(next);
+      fork = this.chain.heightOf(next.getPrevHash());
+    } // while
+    Collections.reverse(path);
+
+    List<Branch> displaced = new ArrayList<Branch>();
+    for (int h = fork + 1; h < this.counted; h++) {
+      displaced.add(new Branch(this.chain.getBlock(h), h, this.totals[h]));
+    } // for
+    this.chain.replaceAfter(fork, path);
+    this.counted = fork + 1;
+    for (Block blk : path) {
+      this.branches.remove(blk.getHash());
+      this.count(blk.getHash());
+    } // for
+    for (Branch old : displaced) {
+      this.keep(old);
+    } // for
+  } // reorganize(Branch)
+
+  /**
+   * Drop the side branches that fork more than PRUNE_DEPTH blocks below
+   * the end of the chain, if the end has moved far enough since we last
+   * looked.
+   */
+  void prune() {
+    int tip = this.counted - 1;
+    if (tip < this.prunedAt + PRUNE_INTERVAL) {
+      return;
+    } // if
+    this.prunedAt = tip;
+    // Parents come before their children, so we know where each
+    // parent forks (or that it was dropped) by the time we need it.
+    this.kept.sort(Comparator.comparingInt((b) -> b.height));
+    ArrayList<Branch> survivors = new ArrayList<Branch>();
+    for (Branch branch : this.kept) {
+      Hash hash = branch.block.getHash();
+      if (this.branches.getOrDefault(hash, null) != branch) {
+        continue;
+      } // if
+      Hash prev = branch.block.getPrevHash();
+      int parentHeight = this.chain.heightOf(prev);
+      if (parentHeight >= 0) {
+        branch.fork = parentHeight;
+      } else {
+        Branch parent = this.branches.getOrDefault(prev, null);
+        branch.fork = (parent == null) ? -1 : parent.fork;
+      } // if/else
+      if (branch.fork < tip - PRUNE_DEPTH) {
+        this.branches.remove(hash);
+      } else {
+        survivors.add(branch);
+      } // if/else
+    } // for
+    this.kept = survivors;
+  } // prune()
+
+  /**
+   * Count the work of any blocks added to the chain since we last
+   * looked, starting over if the chain was changed elsewhere.
+   */
+  void catchUp() {
+    int size = this.chain.getSize();
+    if ((this.counted > size)
+        || ((this.counted > 0)
+            && !this.chain.getBlock(this.counted - 1).getHash().equals(this.lastCounted))) {
+      this.counted = 0;
+    } // if
+    while (this.counted < size) {
+      this.count(this.chain.getBlock(this.counted).getHash());
+    } // while
+  } // catchUp()
+
+  /**
+   * Count the work of the next block in the chain.
+   *
+   * @param hash
+   *   The hash of the block.
+   */
+  void count(Hash hash) {
+    if (this.counted == this.totals.length) {
+      this.totals = Arrays.copyOf(this.totals, this.totals.length * 2);
+    } // if
+    long before = (this.counted == 0) ? 0 : this.totals[this.counted - 1];
+    this.totals[this.counted++] = before + this.blockWork;
+    this.lastCounted = hash;
+  } // count(Hash)
+
+  /**
+   * Keep a block on a side branch.
+   *
+   * @param branch
+   *   The block and its place in the tree.
+   */
+  void keep(Branch branch) {
+    try {
+      this.branches.set(branch.block.getHash(), branch);
+      this.kept.add(branch);
+    } catch (NullKeyException e) {
+      System.err.println("Block has no hash");
+    } // try/catch
+  } // keep(Branch)
+
+  /**
+   * Make sure a block's hash is valid and right for its contents.
+   *
+   * @param blk
+   *   The block.
+   *
+   * @throws IllegalArgumentException
+   *   If it is not.
+   */
+  void checkHash(Block blk) {
+    try {
+      if (!this.chain.validator.isValid(blk.getHash())
+          || !blk.getHash().equals(blk.computeHash())) {
+        throw new IllegalArgumentException("Invalid block: " + blk);
+      } // if
+    } catch (NoSuchAlgorithmException e) {
+      System.err.println("Invalid algorithm");
+    } // try/catch
+  } // checkHash(Block)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Find the work of a block that meets a validator: the number of
+   * hashes we expect to try to meet its target, 2^256 / (target + 1),
+   * up to MAX_BLOCK_WORK. Validators without a target count 1 per block.
+   *
+   * @param check
+   *   The validator.
+   *
+   * @return the work.
+   */
+  static long work(HashValidator check) {
+    if (!(check instanceof DifficultyValidator)) {
+      return 1;
+    } // if
+    BigInteger tries = BigInteger.ONE.shiftLeft(DifficultyValidator.HASH_BITS)
+        .divide(((DifficultyValidator) check).getTarget().add(BigInteger.ONE));
+    return tries.min(BigInteger.valueOf(MAX_BLOCK_WORK)).longValueExact();
+  } // work(HashValidator)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A block on a side branch.
+   */
+  static class Branch {
+    /**
+     * The block.
+     */
+    Block block;
+
+    /**
+     * The height the block would have in the chain.
+     */
+    int height;
+
+    /**
+     * The total work of the branch up to and including the block.
+     */
+    long total;
+
+    /**
+     * The height of the chain block the branch forks from, as of the last
+     * time we pruned the branches.
+     */
+    int fork;
+
+    /**
+     * Create a new side-branch block.
+     *
+     * @param blk
+     *   The block.
+     * @param blockHeight
+     *   The height the block would have in the chain.
+     * @param totalWork
+     *   The total work of the branch up to and including the block.
+     */
+    Branch(Block blk, int blockHeight, long totalWork) {
+      this.block = blk;
+      this.height = blockHeight;
+      this.total = totalWork;
+    } // Branch(Block, int, long)
+  } // class Branch
+} // class BlockTree
@@ -0,0 +1,261 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and timings for mining, hashing, appending, and checking
+ * blocks. Blocks and chains record into the global metrics, which can
+ * be read directly or published through JMX.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class ChainMetrics implements ChainMetricsMBean {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The name under which we publish the global metrics.
+   */
+  public static final String JMX_NAME = "edu.grinnell.csc207.blockchains:type=ChainMetrics";
+
+  /**
+   * How long the hash rate is measured over, in nanoseconds.
+   */
+  static final long RATE_WINDOW = 1_000_000_000L;
+
+  /**
+   * The metrics that blocks and chains record into.
+   */
+  static final ChainMetrics GLOBAL = new ChainMetrics();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of nonces tried while mining.
+   */
+  LongAdder hashesAttempted;
+
+  /**
+   * The number of hashes computed to check blocks.
+   */
+  LongAdder hashesComputed;
+
+  /**
+   * The times to mine blocks.
+   */
+  LatencyHistogram mining;
+
+  /**
+   * The times to append blocks.
+   */
+  LatencyHistogram appending;
+
+  /**
+   * The times to check chains.
+   */
+  LatencyHistogram checking;
+
+  /**
+   * When we last measured the hash rate, in nanoseconds.
+   */
+  long rateTime;
+
+  /**
+   * The number of nonces tried when we last measured the hash rate.
+   */
+  long rateHashes;
+
+  /**
+   * The most recent hash rate.
+   */
+  double rate;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new set of metrics.
+   */
+  public ChainMetrics() {
+    this.hashesAttempted = new LongAdder();
+    this.hashesComputed = new LongAdder();
+    this.mining = new LatencyHistogram();
+    this.appending = new LatencyHistogram();
+    this.checking = new LatencyHistogram();
+    this.rateTime = System.nanoTime();
+  } // ChainMetrics()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the metrics that blocks and chains record into.
+   *
+   * @return the global metrics.
+   */
+  public static ChainMetrics global() {
+    return GLOBAL;
+  } // global()
+
+  /**
+   * Publish the global metrics through JMX, under JMX_NAME. Does
+   * nothing if they are already published.
+   *
+   * @throws JMException
+   *   If the metrics cannot be published.
+   */
+  public static void registerMBean() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(JMX_NAME);
+    if (!server.isRegistered(name)) {
+      server.registerMBean(GLOBAL, name);
+    } // if
+  } // registerMBean()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of nonces tried while mining.
+   *
+   * @return the number of nonces tried.
+   */
+  public long getHashesAttempted() {
+    return this.hashesAttempted.sum();
+  } // getHashesAttempted()
+
+  /**
+   * Get the number of block hashes computed to check blocks.
+   *
+   * @return the number of hashes computed.
+   */
+  public long getHashesComputed() {
+    return this.hashesComputed.sum();
+  } // getHashesComputed()
+
+  /**
+   * Get the number of blocks mined.
+   *
+   * @return the number of blocks mined.
+   */
+  public long getBlocksMined() {
+    return this.mining.getCount();
+  } // getBlocksMined()
+
+  /**
+   * Get the recent mining rate, measured over roughly the last second
+   * (or since the previous call, if that was longer ago).
+   *
+   * @return the number of nonces tried per second, recently.
+   */
+  public synchronized double getHashRate() {
+    long now = System.nanoTime();
+    if (now - this.rateTime >= RATE_WINDOW) {
+      long hashes = this.getHashesAttempted();
+      this.rate = (hashes - this.rateHashes) * 1e9 / (now - this.rateTime);
+      this.rateHashes = hashes;
+      this.rateTime = now;
+    } // if
+    return this.rate;
+  } // getHashRate()
+
+  /**
+   * Get the times to mine blocks.
+   *
+   * @return the histogram of mining times.
+   */
+  public LatencyHistogram getMiningLatency() {
+    return this.mining;
+  } // getMiningLatency()
+
+  /**
+   * Get the times to append blocks.
+   *
+   * @return the histogram of append times.
+   */
+  public LatencyHistogram getAppendLatency() {
+    return this.appending;
+  } // getAppendLatency()
+
+  /**
+   * Get the times to check chains.
+   *
+   * @return the histogram of check times.
+   */
+  public LatencyHistogram getCheckLatency() {
+    return this.checking;
+  } // getCheckLatency()
+
+  /**
+   * Get the mean time to mine a block.
+   *
+   * @return the mean time, in milliseconds.
+   */
+  public double getMiningMeanMillis() {
+    return this.mining.getMean() / 1e6;
+  } // getMiningMeanMillis()
+
+  /**
+   * Get an upper bound on the 99th percentile of the time to mine a block.
+   *
+   * @return the time, in milliseconds.
+   */
+  public double getMiningP99Millis() {
+    return this.mining.getPercentile(99) / 1e6;
+  } // getMiningP99Millis()
+
+  /**
+   * Get the mean time to append a block.
+   *
+   * @return the mean time, in microseconds.
+   */
+  public double getAppendMeanMicros() {
+    return this.appending.getMean() / 1e3;
+  } // getAppendMeanMicros()
+
+  /**
+   * Get the mean time to check a chain.
+   *
+   * @return the mean time, in microseconds.
+   */
+  public double getCheckMeanMicros() {
+    return this.checking.getMean() / 1e3;
+  } // getCheckMeanMicros()
+
+  /**
+   * Forget everything recorded so far.
+   */
+  public synchronized void reset() {
+    this.hashesAttempted.reset();
+    this.hashesComputed.reset();
+    this.mining.reset();
+    this.appending.reset();
+    this.checking.reset();
+    this.rateTime = System.nanoTime();
+    this.rateHashes = 0;
+    this.rate = 0;
+  } // reset()
+
+  /**
+   * Get a string representation of the metrics.
+   *
+   * @return a string representation of the metrics.
+   */
+  public String toString() {
+    return String.format("hashes attempted: %d, hashes computed: %d, hash rate: %.0f/s%n"
+        + "mining: %s%nappend: %s%ncheck: %s", this.getHashesAttempted(),
+        this.getHashesComputed(), this.getHashRate(), this.mining, this.appending,
+        this.checking);
+  } // toString()
+} // class ChainMetrics
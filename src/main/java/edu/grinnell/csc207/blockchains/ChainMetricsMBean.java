@@ -0,0 +1,70 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * The parts of ChainMetrics that we publish through JMX.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public interface ChainMetricsMBean {
+  /**
+   * Get the number of nonces tried while mining.
+   *
+   * @return the number of nonces tried.
+   */
+  long getHashesAttempted();
+
+  /**
+   * Get the number of block hashes computed to check blocks.
+   *
+   * @return the number of hashes computed.
+   */
+  long getHashesComputed();
+
+  /**
+   * Get the number of blocks mined.
+   *
+   * @return the number of blocks mined.
+   */
+  long getBlocksMined();
+
+  /**
+   * Get the recent mining rate.
+   *
+   * @return the number of nonces tried per second, recently.
+   */
+  double getHashRate();
+
+  /**
+   * Get the mean time to mine a block.
+   *
+   * @return the mean time, in milliseconds.
+   */
+  double getMiningMeanMillis();
+
+  /**
+   * Get an upper bound on the 99th percentile of the time to mine a block.
+   *
+   * @return the time, in milliseconds.
+   */
+  double getMiningP99Millis();
+
+  /**
+   * Get the mean time to append a block.
+   *
+   * @return the mean time, in microseconds.
+   */
+  double getAppendMeanMicros();
+
+  /**
+   * Get the mean time to check a chain.
+   *
+   * @return the mean time, in microseconds.
+   */
+  double getCheckMeanMicros();
+
+  /**
+   * Forget everything recorded so far.
+   */
+  void reset();
+} // interface ChainMetricsMBean
@@ -0,0 +1,183 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.math.BigInteger;
+
+/**
+ * Validators that accept 32-byte hashes that are no more than a target,
+ * reading the hash as a 256-bit big-endian number. A target can be given
+ * directly or as a number of leading zero bits, so difficulty can change
+ * by a factor of two (or less) rather than a whole byte at a time. Hashes
+ * are compared eight bytes at a time, stopping at the first eight that
+ * differ from the target.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class DifficultyValidator implements HashValidator {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in a hash we accept.
+   */
+  static final int HASH_BYTES = 32;
+
+  /**
+   * The number of longs in a hash we accept.
+   */
+  static final int WORDS = HASH_BYTES / Long.BYTES;
+
+  /**
+   * The number of bits in a hash we accept.
+   */
+  static final int HASH_BITS = HASH_BYTES * Byte.SIZE;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The target, as big-endian longs.
+   */
+  long[] target;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new validator with the given target.
+   *
+   * @param words
+   *   The target, as big-endian longs.
+   */
+  DifficultyValidator(long[] words) {
+    this.target = words;
+  } // DifficultyValidator(long[])
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Create a validator that accepts hashes that start with a given
+   * number of zero bits.
+   *
+   * @param bits
+   *   The number of leading zero bits, from 0 to 256.
+   *
+   * @return the validator.
+   *
+   * @throws IllegalArgumentException
+   *   If bits is out of range.
+   */
+  public static DifficultyValidator leadingZeroBits(int bits) {
+    if ((bits < 0) || (bits > HASH_BITS)) {
+      throw new IllegalArgumentException("Invalid number of bits: " + bits);
+    } // if
+    long[] words = new long[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      int zeros = bits - i * Long.SIZE;
+      if (zeros <= 0) {
+        words[i] = -1L;
+      } else if (zeros < Long.SIZE) {
+        words[i] = -1L >>> zeros;
+      } // if/else
+    } // for
+    return new DifficultyValidator(words);
+  } // leadingZeroBits(int)
+
+  /**
+   * Create a validator that accepts hashes that are no more than a target.
+   *
+   * @param target
+   *   The target, a number from 0 to 2^256 - 1.
+   *
+   * @return the validator.
+   *
+   * @throws IllegalArgumentException
+   *   If the target is out of range.
+   */
+  public static DifficultyValidator atMost(BigInteger target) {
+    if ((target.signum() < 0) || (target.bitLength() > HASH_BITS)) {
+      throw new IllegalArgumentException("Invalid target: " + target);
+    } // if
+    long[] words = new long[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      words[i] = target.shiftRight((WORDS - 1 - i) * Long.SIZE).longValue();
+    } // for
+    return new DifficultyValidator(words);
+  } // atMost(BigInteger)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if a hash is no more than the target.
+   *
+   * @param hash
+   *   The hash we're checking.
+   *
+   * @return true if the hash has 32 bytes and is no more than the
+   *   target, and false otherwise.
+   */
+  public boolean isValid(Hash hash) {
+    if (hash.length() != HASH_BYTES) {
+      return false;
+    } // if
+    return this.isValid(hash.word(0), hash.word(1), hash.word(2), hash.word(3));
+  } // isValid(Hash)
+
+  /**
+   * Determine if a 32-byte hash, given as big-endian longs, is no more
+   * than the target.
+   *
+   * @param word0
+   *   Bytes 0 to 7 of the hash.
+   * @param word1
+   *   Bytes 8 to 15 of the hash.
+   * @param word2
+   *   Bytes 16 to 23 of the hash.
+   * @param word3
+   *   Bytes 24 to 31 of the hash.
+   *
+   * @return true if the hash is no more than the target, and false
+   *   otherwise.
+   */
+  boolean isValid(long word0, long word1, long word2, long word3) {
+    long[] t = this.target;
+    if (word0 != t[0]) {
+      return Long.compareUnsigned(word0, t[0]) < 0;
+    } else if (word1 != t[1]) {
+      return Long.compareUnsigned(word1, t[1]) < 0;
+    } else if (word2 != t[2]) {
+      return Long.compareUnsigned(word2, t[2]) < 0;
+    } // if/else
+    return Long.compareUnsigned(word3, t[3]) <= 0;
+  } // isValid(long, long, long, long)
+
+  /**
+   * Get the target.
+   *
+   * @return the largest hash this validator accepts, as a number.
+   */
+  public BigInteger getTarget() {
+    BigInteger result = BigInteger.ZERO;
+    for (int i = 0; i < WORDS; i++) {
+      result = result.shiftLeft(Long.SIZE)
+          .or(new BigInteger(Long.toUnsignedString(this.target[i])));
+    } // for
+    return result;
+  } // getTarget()
+
+  /**
+   * Get a string representation of the validator.
+   *
+   * @return a string representation of the validator.
+   */
+  public String toString() {
+    return String.format("DifficultyValidator(target: %064X)", this.getTarget());
+  } // toString()
+} // class DifficultyValidator
@@ -1,22 +1,79 @@
 package edu.grinnell.csc207.blockchains;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
- * Encapsulated hashes.
+ * Encapsulated hashes. Hashes of up to 32 bytes (e.g., SHA-256 digests)
+ * are kept in four longs rather than an array, so they are small, and
+ * comparing them allocates nothing. Hashes are immutable.
  *
  * @author Leonardo Alves Nunes
  * @author Natalie Nardone
  * @author Samuel A. Rebelsky
  */
 public class Hash {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * A view of byte arrays as big-endian longs.
+   */
+  static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  /**
+   * The most bytes we keep in the words.
+   */
+  static final int COMPACT_BYTES = 4 * Long.BYTES;
+
+  /**
+   * The digits used in hex strings.
+   */
+  static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The data stored in the hash.
+   * The number of bytes in the hash.
+   */
+  final int length;
+
+  /**
+   * Bytes 0 to 7 of the hash, big-endian and padded with zeros.
    */
-  byte[] data;
+  final long w0;
+
+  /**
+   * Bytes 8 to 15 of the hash, big-endian and padded with zeros.
+   */
+  final long w1;
+
+  /**
+   * Bytes 16 to 23 of the hash, big-endian and padded with zeros.
+   */
+  final long w2;
+
+  /**
+   * Bytes 24 to 31 of the hash, big-endian and padded with zeros.
+   */
+  final long w3;
+
+  /**
+   * The bytes of a hash longer than COMPACT_BYTES (or null).
+   */
+  final byte[] longer;
+
+  /**
+   * The hash code (or 0 if not yet computed).
+   */
+  int code;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -29,9 +86,43 @@ public class Hash {
    *   The data to copy into the hash.
    */
   public Hash(byte[] data) {
-    this.data = Arrays.copyOf(data, data.length);
+    this.length = data.length;
+    if (data.length > COMPACT_BYTES) {
+      this.longer = Arrays.copyOf(data, data.length);
+      this.w0 = 0;
+      this.w1 = 0;
+      this.w2 = 0;
+      this.w3 = 0;
+    } else {
+      this.longer = null;
+      this.w0 = pack(data, 0);
+      this.w1 = pack(data, Long.BYTES);
+      this.w2 = pack(data, 2 * Long.BYTES);
+      this.w3 = pack(data, 3 * Long.BYTES);
+    } // if/else
   } // Hash(byte[])
 
+  /**
+   * Create a new 32-byte hash from its words.
+   *
+   * @param word0
+   *   Bytes 0 to 7, big-endian.
+   * @param word1
+   *   Bytes 8 to 15, big-endian.
+   * @param word2
+   *   Bytes 16 to 23, big-endian.
+   * @param word3
+   *   Bytes 24 to 31, big-endian.
+   */
+  Hash(long word0, long word1, long word2, long word3) {
+    this.length = COMPACT_BYTES;
+    this.longer = null;
+    this.w0 = word0;
+    this.w1 = word1;
+    this.w2 = word2;
+    this.w3 = word3;
+  } // Hash(long, long, long, long)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -42,7 +133,7 @@ public class Hash {
    * @return the number of bytes in the hash.
    */
   public int length() {
-    return data.length;
+    return this.length;
   } // length()
 
   /**
@@ -55,9 +146,40 @@ public class Hash {
    * @return the ith byte
    */
   public byte get(int i) {
-    return data[i];
+    Objects.checkIndex(i, this.length);
+    if (this.longer != null) {
+      return this.longer[i];
+    } // if
+    return (byte) (this.word(i / Long.BYTES) >>> (Byte.SIZE * (Long.BYTES - 1 - i % Long.BYTES)));
   } // get()
 
+  /**
+   * Get the ith group of eight bytes as a big-endian long.
+   *
+   * @param i
+   *   The index of the group, between 0 (inclusive) and length() / 8
+   *   (exclusive).
+   *
+   * @return the bytes from 8i to 8i + 7 as a long.
+   */
+  long word(int i) {
+    if (this.longer != null) {
+      return (long) LONGS.get(this.longer, i * Long.BYTES);
+    } // if
+    switch (i) {
+      case 0:
+        return this.w0;
+      case 1:
+        return this.w1;
+      case 2:
+        return this.w2;
+      case 3:
+        return this.w3;
+      default:
+        throw new IndexOutOfBoundsException("No word " + i + " in a hash of " + this.length);
+    } // switch
+  } // word(int)
+
   /**
    * Get a copy of the bytes in the hash. We make a copy so that the client
    * cannot change them.
@@ -65,22 +187,73 @@ public class Hash {
    * @return a copy of the bytes in the hash.
    */
   public byte[] getBytes() {
-    return Arrays.copyOf(data, data.length);
+    byte[] result = new byte[this.length];
+    this.writeTo(result, 0);
+    return result;
   } // getBytes()
 
+  /**
+   * Write the bytes of the hash into an array.
+   *
+   * @param dest
+   *   The array to write to.
+   * @param offset
+   *   Where in dest to write the first byte.
+   *
+   * @return the index just after the last byte written.
+   */
+  public int writeTo(byte[] dest, int offset) {
+    Objects.checkFromIndexSize(offset, this.length, dest.length);
+    if (this.longer != null) {
+      System.arraycopy(this.longer, 0, dest, offset, this.length);
+      return offset + this.length;
+    } // if
+    int words = this.length / Long.BYTES;
+    for (int i = 0; i < words; i++) {
+      LONGS.set(dest, offset + i * Long.BYTES, this.word(i));
+    } // for
+    for (int i = words * Long.BYTES; i < this.length; i++) {
+      dest[offset + i] = this.get(i);
+    } // for
+    return offset + this.length;
+  } // writeTo(byte[], int)
+
+  /**
+   * Write the bytes of the hash into a buffer, at its position.
+   *
+   * @param buf
+   *   The buffer to write to.
+   */
+  public void writeTo(ByteBuffer buf) {
+    if (this.longer != null) {
+      buf.put(this.longer);
+      return;
+    } // if
+    int words = this.length / Long.BYTES;
+    ByteOrder order = buf.order();
+    buf.order(ByteOrder.BIG_ENDIAN);
+    for (int i = 0; i < words; i++) {
+      buf.putLong(this.word(i));
+    } // for
+    buf.order(order);
+    for (int i = words * Long.BYTES; i < this.length; i++) {
+      buf.put(this.get(i));
+    } // for
+  } // writeTo(ByteBuffer)
+
   /**
    * Convert to a hex string.
    *
    * @return the hash as a hex string.
    */
   public String toString() {
-    StringBuilder str = new StringBuilder();
-    for (int i = 0; i < data.length; i++) {
-      int temp = Byte.toUnsignedInt(data[i]);
-      String tempstr = String.format("%02X", temp);
-      str.append(tempstr);
+    char[] chars = new char[2 * this.length];
+    for (int i = 0; i < this.length; i++) {
+      int temp = Byte.toUnsignedInt(this.get(i));
+      chars[2 * i] = HEX_DIGITS[temp >>> 4];
+      chars[2 * i + 1] = HEX_DIGITS[temp & 0xF];
     } // for
-    return str.toString();
+    return new String(chars);
   } // toString()
 
   /**
@@ -95,7 +268,14 @@ public class Hash {
   public boolean equals(Object other) {
     if (other instanceof Hash) {
       Hash o = (Hash) other;
-      return Arrays.equals(o.getBytes(), this.data);
+      if (this.length != o.length) {
+        return false;
+      } else if (this.longer != null) {
+        return Arrays.equals(this.longer, o.longer);
+      } else {
+        return (this.w0 == o.w0) && (this.w1 == o.w1) && (this.w2 == o.w2)
+            && (this.w3 == o.w3);
+      } // if/else
     } // if
     return false;
   } // equals(Object)
@@ -106,6 +286,44 @@ public class Hash {
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    int result = this.code;
+    if (result == 0) {
+      if (this.longer != null) {
+        result = Arrays.hashCode(this.longer);
+      } else {
+        result = 31 * this.length + Long.hashCode(this.w0);
+        result = 31 * result + Long.hashCode(this.w1);
+        result = 31 * result + Long.hashCode(this.w2);
+        result = 31 * result + Long.hashCode(this.w3);
+      } // if/else
+      this.code = result;
+    } // if
+    return result;
   } // hashCode()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Read eight bytes of an array as a big-endian long, treating bytes
+   * past the end of the array as zero.
+   *
+   * @param data
+   *   The array to read from.
+   * @param from
+   *   The index of the first byte to read.
+   *
+   * @return the long.
+   */
+  static long pack(byte[] data, int from) {
+    if (from + Long.BYTES <= data.length) {
+      return (long) LONGS.get(data, from);
+    } // if
+    long word = 0;
+    for (int i = from; i < from + Long.BYTES; i++) {
+      word = (word << Byte.SIZE) | ((i < data.length) ? (data[i] & 0xFF) : 0);
+    } // for
+    return word;
+  } // pack(byte[], int)
 } // class Hash
@@ -9,7 +9,8 @@ package edu.grinnell.csc207.blockchains;
  */
 public interface HashValidator {
   /**
-   * Determine if a hash meets some criterion.
+   * Determine if a hash meets some criterion. Hashes are immutable, so
+   * a validator may keep the ones it is given.
    *
    * @param hash
    *   The hash we're checking.
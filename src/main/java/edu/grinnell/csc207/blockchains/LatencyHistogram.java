@@ -0,0 +1,148 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograms of durations, with one bucket for each power of two
+ * nanoseconds. Recording is lock free, so it is cheap enough to do on
+ * every call we time.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class LatencyHistogram {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of durations in each bucket. Bucket i holds durations
+   * from 2^i to 2^(i+1) - 1 nanoseconds (and bucket 0 also holds 0).
+   */
+  AtomicLongArray buckets;
+
+  /**
+   * The number of durations recorded.
+   */
+  LongAdder count;
+
+  /**
+   * The sum of the durations recorded, in nanoseconds.
+   */
+  LongAdder total;
+
+  /**
+   * The longest duration recorded, in nanoseconds.
+   */
+  AtomicLong max;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty histogram.
+   */
+  public LatencyHistogram() {
+    this.buckets = new AtomicLongArray(Long.SIZE);
+    this.count = new LongAdder();
+    this.total = new LongAdder();
+    this.max = new AtomicLong();
+  } // LatencyHistogram()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Record a duration.
+   *
+   * @param nanos
+   *   The duration, in nanoseconds.
+   */
+  public void record(long nanos) {
+    long val = Math.max(0, nanos);
+    this.buckets.incrementAndGet(Math.max(0, Long.SIZE - 1 - Long.numberOfLeadingZeros(val)));
+    this.count.increment();
+    this.total.add(val);
+    this.max.accumulateAndGet(val, Math::max);
+  } // record(long)
+
+  /**
+   * Get the number of durations recorded.
+   *
+   * @return the number of durations.
+   */
+  public long getCount() {
+    return this.count.sum();
+  } // getCount()
+
+  /**
+   * Get the mean duration.
+   *
+   * @return the mean, in nanoseconds (or 0 if nothing was recorded).
+   */
+  public double getMean() {
+    long n = this.getCount();
+    return (n == 0) ? 0 : (double) this.total.sum() / n;
+  } // getMean()
+
+  /**
+   * Get the longest duration.
+   *
+   * @return the longest duration, in nanoseconds.
+   */
+  public long getMax() {
+    return this.max.get();
+  } // getMax()
+
+  /**
+   * Estimate a percentile. The estimate is the top of the bucket that
+   * holds the percentile, so it is within a factor of two.
+   *
+   * @param pct
+   *   The percentile, from 0 to 100.
+   *
+   * @return an upper bound on the percentile, in nanoseconds.
+   */
+  public long getPercentile(double pct) {
+    long n = this.getCount();
+    if (n == 0) {
+      return 0;
+    } // if
+    long rank = (long) Math.ceil(n * Math.min(100, Math.max(0, pct)) / 100);
+    long seen = 0;
+    for (int i = 0; i < Long.SIZE; i++) {
+      seen += this.buckets.get(i);
+      if ((seen >= rank) && (seen > 0)) {
+        return Math.min(this.getMax(), (2L << i) - 1);
+      } // if
+    } // for
+    return this.getMax();
+  } // getPercentile(double)
+
+  /**
+   * Forget every duration recorded.
+   */
+  public void reset() {
+    for (int i = 0; i < Long.SIZE; i++) {
+      this.buckets.set(i, 0);
+    } // for
+    this.count.reset();
+    this.total.reset();
+    this.max.set(0);
+  } // reset()
+
+  /**
+   * Get a string representation of the histogram.
+   *
+   * @return a string representation of the histogram.
+   */
+  public String toString() {
+    return String.format("count=%d mean=%.0fns p50<=%dns p99<=%dns max=%dns",
+        this.getCount(), this.getMean(), this.getPercentile(50), this.getPercentile(99),
+        this.getMax());
+  } // toString()
+} // class LatencyHistogram
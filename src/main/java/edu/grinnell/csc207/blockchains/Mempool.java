@@ -0,0 +1,297 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transactions waiting to go into a chain. Any number of threads may
+ * submit transactions at once; submitting never waits for mining.
+ *
+ * A transaction is only accepted if it is not already waiting and its
+ * source can afford it on top of everything the source already has
+ * waiting. Money a source has waiting to receive does not count until
+ * it is in the chain, so any batch drained from the pool can go into
+ * the chain in any order without an overdraft (as long as the chain
+ * does not change in other ways).
+ *
+ * Transactions have no identity beyond their contents, so two equal
+ * transactions (the same amount between the same people) cannot wait
+ * at the same time; the second is turned away until the first has been
+ * released.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class Mempool {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Larger amounts first.
+   */
+  public static final Comparator<Transaction> BY_AMOUNT =
+      Comparator.comparingInt(Transaction::getAmount).reversed();
+
+  /**
+   * In the order they arrived.
+   */
+  public static final Comparator<Transaction> BY_ARRIVAL = (a, b) -> 0;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chain the transactions are for.
+   */
+  BlockChain chain;
+
+  /**
+   * The waiting transactions, by priority and then by arrival.
+   */
+  PriorityBlockingQueue<Entry> queue;
+
+  /**
+   * The transactions that are waiting or have been drained but not yet
+   * released.
+   */
+  Set<Transaction> pending;
+
+  /**
+   * The total amount each source has pending.
+   */
+  ConcurrentHashMap<String, Long> reserved;
+
+  /**
+   * The number of transactions that have arrived.
+   */
+  AtomicLong arrivals;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty pool for a chain that gives larger amounts priority.
+   *
+   * @param target
+   *   The chain the transactions are for.
+   */
+  public Mempool(BlockChain target) {
+    this(target, BY_AMOUNT);
+  } // Mempool(BlockChain)
+
+  /**
+   * Create an empty pool for a chain.
+   *
+   * @param target
+   *   The chain the transactions are for.
+   * @param priority
+   *   Orders transactions so that those that should be mined first come
+   *   first. Transactions that it considers equal are drained in the
+   *   order they arrived.
+   */
+  public Mempool(BlockChain target, Comparator<Transaction> priority) {
+    this.chain = target;
+    Comparator<Entry> byPriority = Comparator.comparing((e) -> e.transaction, priority);
+    this.queue = new PriorityBlockingQueue<Entry>(64,
+        byPriority.thenComparingLong((e) -> e.arrival));
+    this.pending = ConcurrentHashMap.newKeySet();
+    this.reserved = new ConcurrentHashMap<String, Long>();
+    this.arrivals = new AtomicLong();
+  } // Mempool(BlockChain, Comparator<Transaction>)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a transaction to the pool.
+   *
+   * @param t
+   *   The transaction.
+   *
+   * @return true if the transaction was added, or false if it has a
+   *   negative amount, it (or an equal transaction) is already pending,
+   *   or its source cannot afford it along with everything else the
+   *   source has pending.
+   */
+  public boolean submit(Transaction t) {
+    if ((t.getAmount() < 0) || !this.pending.add(t)) {
+      return false;
+    } // if
+    if (!t.getSource().equals("") && !this.reserve(t.getSource(), t.getAmount())) {
+      this.pending.remove(t);
+      return false;
+    } // if
+    this.queue.add(new Entry(t, this.arrivals.getAndIncrement()));
+    return true;
+  } // submit(Transaction)
+
+  /**
+   * Take the transactions that should be mined next out of the pool.
+   * They stay pending (so they cannot be submitted again, and their
+   * amounts still count against their sources) until they are released.
+   *
+   * @param max
+   *   The most transactions to take.
+   *
+   * @return the transactions, highest priority first.
+   */
+  public List<Transaction> drain(int max) {
+    List<Entry> entries = this.drainEntries(max);
+    List<Transaction> batch = new ArrayList<Transaction>(entries.size());
+    for (Entry e : entries) {
+      batch.add(e.transaction);
+    } // for
+    return batch;
+  } // drain(int)
+
+  /**
+   * Stop counting drained transactions as pending, once they are in the
+   * chain or have been given up on.
+   *
+   * @param batch
+   *   Transactions returned by drain.
+   */
+  public void release(Collection<Transaction> batch) {
+    for (Transaction t : batch) {
+      if (this.pending.remove(t) && !t.getSource().equals("")) {
+        this.reserved.computeIfPresent(t.getSource(),
+            (source, held) -> (held == t.getAmount()) ? null : held - t.getAmount());
+      } // if
+    } // for
+  } // release(Collection<Transaction>)
+
+  /**
+   * Drain a batch, mine and append it to the chain, and release the
+   * transactions that were appended.
+   *
+   * @param max
+   *   The most transactions to mine.
+   *
+   * @return the blocks that were appended.
+   *
+   * @throws IllegalArgumentException
+   *   If a mined block cannot be appended, as in BlockChain.mineAll. The
+   *   transactions that were appended are released, and the rest go
+   *   back into the pool in the places they had before.
+   */
+  public List<Block> mineBatch(int max) {
+    List<Entry> entries = this.drainEntries(max);
+    List<Transaction> batch = new ArrayList<Transaction>(entries.size());
+    for (Entry e : entries) {
+      batch.add(e.transaction);
+    } // for
+    List<Block> appended = new ArrayList<Block>();
+    try {
+      this.chain.mineAll(batch, appended);
+      return appended;
+    } finally {
+      int mined = appended.size();
+      this.release(batch.subList(0, mined));
+      this.queue.addAll(entries.subList(mined, entries.size()));
+    } // try/finally
+  } // mineBatch(int)
+
+  /**
+   * Get the number of transactions waiting to be drained.
+   *
+   * @return the number of transactions.
+   */
+  public int size() {
+    return this.queue.size();
+  } // size()
+
+  /**
+   * Get the total amount a source has pending.
+   *
+   * @param source
+   *   The source.
+   *
+   * @return the amount.
+   */
+  public long reserved(String source) {
+    return this.reserved.getOrDefault(source, 0L);
+  } // reserved(String)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Take the entries that should be mined next out of the queue.
+   *
+   * @param max
+   *   The most entries to take.
+   *
+   * @return the entries, highest priority first.
+   */
+  List<Entry> drainEntries(int max) {
+    List<Entry> entries = new ArrayList<Entry>();
+    this.queue.drainTo(entries, max);
+    return entries;
+  } // drainEntries(int)
+
+  /**
+   * Set aside some of a source's balance, if it can afford it.
+   *
+   * @param source
+   *   The source.
+   * @param amount
+   *   The amount to set aside.
+   *
+   * @return true if the amount was set aside and false otherwise.
+   */
+  boolean reserve(String source, int amount) {
+    boolean[] ok = {false};
+    this.reserved.compute(source, (key, held) -> {
+      long total = ((held == null) ? 0 : held) + amount;
+      if (this.chain.balance(key) < total) {
+        return held;
+      } // if
+      ok[0] = true;
+      return total;
+    });
+    return ok[0];
+  } // reserve(String, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A transaction in the queue, with its place in the order of arrival.
+   */
+  static class Entry {
+    /**
+     * The transaction.
+     */
+    Transaction transaction;
+
+    /**
+     * How many transactions arrived before this one.
+     */
+    long arrival;
+
+    /**
+     * Create a new entry.
+     *
+     * @param t
+     *   The transaction.
+     * @param arrived
+     *   How many transactions arrived before this one.
+     */
+    Entry(Transaction t, long arrived) {
+      this.transaction = t;
+      this.arrival = arrived;
+    } // Entry(Transaction, long)
+  } // class Entry
+} // class Mempool
@@ -0,0 +1,189 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A block being mined in the background. A job is a future for the
+ * mined block, so callers can wait for it, compose it, cancel it, or
+ * give it a deadline (e.g., with orTimeout); once the job is complete
+ * for any reason, its workers stop searching. While it runs, the job
+ * also reports how many nonces have been tried and how quickly.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class MiningJob extends CompletableFuture<Block> {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of the block being mined.
+   */
+  int num;
+
+  /**
+   * The transaction for the block being mined.
+   */
+  Transaction transaction;
+
+  /**
+   * The hash of the previous block.
+   */
+  Hash prevHash;
+
+  /**
+   * Something that tells us the job is no longer wanted (or null).
+   */
+  BooleanSupplier stale;
+
+  /**
+   * The number of nonces tried so far.
+   */
+  LongAdder tried;
+
+  /**
+   * When the job started, in nanoseconds.
+   */
+  long startNanos;
+
+  /**
+   * When the job finished, in nanoseconds (or 0 while it runs).
+   */
+  volatile long endNanos;
+
+  /**
+   * Completes once the workers searching for the block have stopped.
+   */
+  volatile CompletableFuture<Void> stopped;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new job for a block with the given contents.
+   *
+   * @param blockNum
+   *   The number of the block.
+   * @param trans
+   *   The transaction for the block.
+   * @param prev
+   *   The hash of the previous block.
+   * @param isStale
+   *   Something that returns true once the block is no longer wanted
+   *   (e.g., because the chain has moved on), or null if it is always
+   *   wanted.
+   */
+  MiningJob(int blockNum, Transaction trans, Hash prev, BooleanSupplier isStale) {
+    this.num = blockNum;
+    this.transaction = trans;
+    this.prevHash = prev;
+    this.stale = isStale;
+    this.tried = new LongAdder();
+    this.startNanos = System.nanoTime();
+    this.stopped = CompletableFuture.completedFuture(null);
+    this.whenComplete((block, err) -> {
+      this.endNanos = System.nanoTime();
+      if (block != null) {
+        ChainMetrics.GLOBAL.mining.record(this.endNanos - this.startNanos);
+      } // if
+    });
+  } // MiningJob(int, Transaction, Hash, BooleanSupplier)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of nonces tried so far.
+   *
+   * @return the number of nonces tried.
+   */
+  public long getNoncesTried() {
+    return this.tried.sum();
+  } // getNoncesTried()
+
+  /**
+   * Get the time spent mining so far (or in total, once the job is done).
+   *
+   * @return the elapsed time.
+   */
+  public Duration getElapsed() {
+    long end = this.endNanos;
+    return Duration.ofNanos(((end == 0) ? System.nanoTime() : end) - this.startNanos);
+  } // getElapsed()
+
+  /**
+   * Get the average number of nonces tried per second.
+   *
+   * @return the hash rate.
+   */
+  public double getHashRate() {
+    long nanos = this.getElapsed().toNanos();
+    if (nanos <= 0) {
+      return 0;
+    } // if
+    return this.getNoncesTried() * 1e9 / nanos;
+  } // getHashRate()
+
+  /**
+   * Find out when the workers started by a ParallelMiner for this job
+   * have all stopped. Workers notice that a job is done a little after
+   * it happens, and they stop saving checkpoints once it is, so after
+   * this completes nothing more is written for the job.
+   *
+   * @return a future that completes (normally) once the workers have
+   *   stopped.
+   */
+  public CompletableFuture<Void> whenStopped() {
+    return this.stopped;
+  } // whenStopped()
+
+  /**
+   * Get a string representation of the job's progress.
+   *
+   * @return a string representation of the job.
+   */
+  public String toString() {
+    return String.format("Mining block %d (%s): %d nonces in %d ms (%.0f/s)%s",
+        this.num, this.transaction, this.getNoncesTried(), this.getElapsed().toMillis(),
+        this.getHashRate(), this.isDone() ? ", done" : "");
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Record that workers have tried some nonces.
+   *
+   * @param count
+   *   The number of nonces tried.
+   */
+  void addTried(long count) {
+    this.tried.add(count);
+    ChainMetrics.GLOBAL.hashesAttempted.add(count);
+  } // addTried(long)
+
+  /**
+   * Determine whether workers should stop searching, cancelling the job
+   * if it has gone stale.
+   *
+   * @return true if the job is done and false otherwise.
+   */
+  boolean shouldStop() {
+    if (this.isDone()) {
+      return true;
+    } // if
+    if ((this.stale != null) && this.stale.getAsBoolean()) {
+      this.completeExceptionally(new CancellationException("Chain changed while mining"));
+      return true;
+    } // if
+    return false;
+  } // shouldStop()
+} // class MiningJob
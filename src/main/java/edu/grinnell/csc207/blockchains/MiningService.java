@@ -0,0 +1,361 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A service that mines blocks for many clients at once on a fixed
+ * number of worker threads. Each request is searched a slice of nonces
+ * at a time, and a request that has not finished goes to the back of
+ * the queue, so a hard block cannot starve the requests behind it.
+ * Requests for the same block on the same chain share one search.
+ *
+ * Callers get a MiningJob for each request rather than blocking, so
+ * many requests can wait without tying up a thread each.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class MiningService implements AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of nonces a request tries before yielding its worker.
+   */
+  static final long SLICE_SIZE = 1 << 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The workers that run the searches.
+   */
+  ExecutorService workers;
+
+  /**
+   * The searches that have not yet finished, by what they are mining.
+   */
+  ConcurrentHashMap<List<Object>, Search> searches;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new service with one worker for each processor.
+   */
+  public MiningService() {
+    this(Runtime.getRuntime().availableProcessors());
+  } // MiningService()
+
+  /**
+   * Create a new service with the given number of workers.
+   *
+   * @param numWorkers
+   *   The number of worker threads.
+   *
+   * @throws IllegalArgumentException
+   *   If numWorkers is not positive.
+   */
+  public MiningService(int numWorkers) {
+    if (numWorkers < 1) {
+      throw new IllegalArgumentException("Need at least one worker: " + numWorkers);
+    } // if
+    AtomicInteger count = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(numWorkers, (r) -> {
+      Thread thread = new Thread(r, "mining-service-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.searches = new ConcurrentHashMap<List<Object>, Search>();
+  } // MiningService(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Request a new block for the end of a chain. The job is cancelled
+   * if the end of the chain changes before a nonce is found.
+   *
+   * @param chain
+   *   The chain the block is for.
+   * @param t
+   *   The transaction that goes in the block.
+   *
+   * @return the job that will complete with the new block.
+   */
+  public MiningJob submit(BlockChain chain, Transaction t) {
+    return this.submit(chain.nextJob(t, null), chain.validator);
+  } // submit(BlockChain, Transaction)
+
+  /**
+   * Request a block with the given contents.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the job that will complete with the mined block.
+   */
+  public MiningJob submit(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) {
+    return this.submit(new MiningJob(num, transaction, prevHash, null), check);
+  } // submit(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Get the number of distinct searches that have not finished.
+   *
+   * @return the number of searches.
+   */
+  public int getPending() {
+    return this.searches.size();
+  } // getPending()
+
+  /**
+   * Stop the workers, cancelling every request that has not finished.
+   */
+  public void close() {
+    this.workers.shutdownNow();
+    for (Search search : this.searches.values()) {
+      search.finish(null, new CancellationException("Mining service closed"));
+    } // for
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Add a job to the search for its block, starting a new search if
+   * there is none.
+   *
+   * @param job
+   *   The job describing the block to mine.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return job.
+   */
+  MiningJob submit(MiningJob job, HashValidator check) {
+    List<Object> key = List.of(job.num, job.transaction, job.prevHash, check);
+    while (true) {
+      Search search = this.searches.computeIfAbsent(key, (k) -> new Search(k, job, check));
+      int waiting = search.join(job);
+      if (waiting == 1) {
+        this.schedule(search);
+      } // if
+      if (waiting > 0) {
+        return job;
+      } // if
+      // That search finished while we were joining; try again.
+      this.searches.remove(key, search);
+    } // while
+  } // submit(MiningJob, HashValidator)
+
+  /**
+   * Put a search at the back of the queue.
+   *
+   * @param search
+   *   The search to run.
+   */
+  void schedule(Search search) {
+    try {
+      this.workers.execute(() -> this.runSlice(search));
+    } catch (RejectedExecutionException e) {
+      search.finish(null, new CancellationException("Mining service closed"));
+    } // try/catch
+  } // schedule(Search)
+
+  /**
+   * Run one slice of a search, putting the search back in the queue if
+   * it is still wanted and has not found a nonce.
+   *
+   * @param search
+   *   The search to run.
+   */
+  void runSlice(Search search) {
+    try {
+      if (search.slice()) {
+        this.schedule(search);
+      } // if
+    } catch (RuntimeException e) {
+      search.finish(null, e);
+    } // try/catch
+  } // runSlice(Search)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A search for the nonce of one block, shared by every job that
+   * wants that block.
+   */
+  class Search {
+    /**
+     * The key of this search in searches.
+     */
+    List<Object> key;
+
+    /**
+     * The first job for this search, which describes the block.
+     */
+    MiningJob first;
+
+    /**
+     * The validator used to check the block.
+     */
+    HashValidator check;
+
+    /**
+     * The jobs waiting on this search.
+     */
+    ArrayList<MiningJob> jobs;
+
+    /**
+     * Whether the search has finished.
+     */
+    boolean finished;
+
+    /**
+     * The hasher for the block (created by the first slice).
+     */
+    NonceHasher hasher;
+
+    /**
+     * The next nonce to try.
+     */
+    long next;
+
+    /**
+     * Create a new search.
+     *
+     * @param searchKey
+     *   The key of this search.
+     * @param job
+     *   The job describing the block to mine.
+     * @param validator
+     *   The validator used to check the block.
+     */
+    Search(List<Object> searchKey, MiningJob job, HashValidator validator) {
+      this.key = searchKey;
+      this.first = job;
+      this.check = validator;
+      this.jobs = new ArrayList<MiningJob>();
+      this.finished = false;
+      this.next = 0;
+    } // Search(List<Object>, MiningJob, HashValidator)
+
+    /**
+     * Add a job to this search.
+     *
+     * @param job
+     *   The job to add.
+     *
+     * @return the number of jobs now waiting on the search, or 0 if the
+     *   search has already finished.
+     */
+    synchronized int join(MiningJob job) {
+      if (this.finished) {
+        return 0;
+      } // if
+      this.jobs.add(job);
+      return this.jobs.size();
+    } // join(MiningJob)
+
+    /**
+     * Try the next slice of nonces.
+     *
+     * @return true if the search should continue and false otherwise.
+     */
+    boolean slice() {
+      if (this.stopped()) {
+        return false;
+      } // if
+      if (this.hasher == null) {
+        this.hasher = new NonceHasher(this.first.num, this.first.transaction,
+            this.first.prevHash);
+      } // if
+      long end = this.next + SLICE_SIZE;
+      for (long nonce = this.next; nonce < end; nonce++) {
+        if (this.hasher.meets(nonce, this.check)) {
+          this.addTried(nonce - this.next + 1);
+          this.finish(new Block(this.first.num, this.first.transaction, this.first.prevHash,
+              nonce), null);
+          return false;
+        } // if
+      } // for
+      this.addTried(SLICE_SIZE);
+      this.next = end;
+      return true;
+    } // slice()
+
+    /**
+     * Determine whether every job has stopped waiting, finishing the
+     * search if so.
+     *
+     * @return true if no job is waiting and false otherwise.
+     */
+    synchronized boolean stopped() {
+      boolean waiting = false;
+      for (MiningJob job : this.jobs) {
+        if (!job.shouldStop()) {
+          waiting = true;
+        } // if
+      } // for
+      if (!waiting) {
+        this.finish(null, null);
+      } // if
+      return !waiting;
+    } // stopped()
+
+    /**
+     * Record progress in every job.
+     *
+     * @param tried
+     *   The number of nonces tried.
+     */
+    synchronized void addTried(long tried) {
+      for (MiningJob job : this.jobs) {
+        job.tried.add(tried);
+      } // for
+      ChainMetrics.GLOBAL.hashesAttempted.add(tried);
+    } // addTried(long)
+
+    /**
+     * Finish the search, completing every job with the block or the
+     * exception.
+     *
+     * @param block
+     *   The mined block (or null).
+     * @param err
+     *   The reason the search failed (or null).
+     */
+    synchronized void finish(Block block, Throwable err) {
+      this.finished = true;
+      MiningService.this.searches.remove(this.key, this);
+      for (MiningJob job : this.jobs) {
+        if (block != null) {
+          job.complete(block);
+        } else if (err != null) {
+          job.completeExceptionally(err);
+        } // if/else
+      } // for
+    } // finish(Block, Throwable)
+  } // class Search
+} // class MiningService
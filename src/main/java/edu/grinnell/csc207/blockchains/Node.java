@@ -5,7 +5,12 @@ package edu.grinnell.csc207.blockchains;
  *
  * @author Leonardo Alves Nunes
  * @author Natalie Nardone
+ *
+ * @deprecated BlockChain keeps its blocks in a BlockStore and no longer
+ *   uses nodes; use BlockChain.getBlock or BlockChain.blocks instead.
+ *   This class is kept only so that existing code still compiles.
  */
+@Deprecated
 public class Node {
   // +--------+------------------------------------------------------
   // | Fields |
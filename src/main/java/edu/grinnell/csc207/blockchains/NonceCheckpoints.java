@@ -0,0 +1,220 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * Checkpoints of how far mining has got, kept in a directory so that a
+ * search for a block can pick up where an earlier run (perhaps in an
+ * earlier process) left off. A checkpoint for a block records a nonce
+ * such that every lower nonce is known not to work, so resuming from it
+ * still finds the lowest valid nonce.
+ *
+ * There is one small file for each block, named for a hash of the
+ * block's number, transaction, and previous hash and the target of the
+ * validator, since a nonce that is too high for one target may be the
+ * lowest that works for an easier one. Checkpoints are only kept for
+ * DifficultyValidators; for any other validator we cannot tell whether
+ * two searches want the same thing, so they always start at nonce 0.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class NonceCheckpoints {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How often miners save checkpoints, unless told otherwise.
+   */
+  static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+
+  /**
+   * The extension of checkpoint files.
+   */
+  static final String EXTENSION = ".nonce";
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The directory that holds the checkpoints.
+   */
+  Path dir;
+
+  /**
+   * How often miners save checkpoints, in nanoseconds.
+   */
+  long interval;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new set of checkpoints in a directory, saved every five
+   * seconds while mining.
+   *
+   * @param directory
+   *   The directory that holds the checkpoints.
+   *
+   * @throws IOException
+   *   If the directory cannot be created.
+   */
+  public NonceCheckpoints(Path directory) throws IOException {
+    this(directory, DEFAULT_INTERVAL);
+  } // NonceCheckpoints(Path)
+
+  /**
+   * Create a new set of checkpoints in a directory.
+   *
+   * @param directory
+   *   The directory that holds the checkpoints.
+   * @param every
+   *   How often miners save checkpoints.
+   *
+   * @throws IOException
+   *   If the directory cannot be created.
+   */
+  public NonceCheckpoints(Path directory, Duration every) throws IOException {
+    this.dir = Files.createDirectories(directory);
+    this.interval = every.toNanos();
+  } // NonceCheckpoints(Path, Duration)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Find where to resume mining a block.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return a nonce such that no lower nonce works (0 if there is no
+   *   usable checkpoint).
+   */
+  public long load(int num, Transaction transaction, Hash prevHash, HashValidator check) {
+    Path file = this.file(num, transaction, prevHash, check);
+    if ((file == null) || !Files.exists(file)) {
+      return 0;
+    } // if
+    try {
+      return Math.max(0, Long.parseLong(Files.readString(file).trim()));
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Ignoring unreadable checkpoint " + file + ": " + e);
+      return 0;
+    } // try/catch
+  } // load(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Record how far mining a block has got. Nothing is recorded for a
+   * validator that is not a DifficultyValidator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   * @param searched
+   *   A nonce such that no lower nonce works.
+   */
+  public void save(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      long searched) {
+    Path file = this.file(num, transaction, prevHash, check);
+    if (file == null) {
+      return;
+    } // if
+    try {
+      Path tmp = Files.createTempFile(this.dir, "checkpoint", ".tmp");
+      Files.writeString(tmp, Long.toString(searched));
+      try {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      } // try/catch
+    } catch (IOException e) {
+      System.err.println("Could not save checkpoint " + file + ": " + e);
+    } // try/catch
+  } // save(int, Transaction, Hash, HashValidator, long)
+
+  /**
+   * Forget the checkpoint for a block (e.g., once it has been mined).
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   */
+  public void clear(int num, Transaction transaction, Hash prevHash, HashValidator check) {
+    Path file = this.file(num, transaction, prevHash, check);
+    if (file == null) {
+      return;
+    } // if
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      System.err.println("Could not remove checkpoint " + file + ": " + e);
+    } // try/catch
+  } // clear(int, Transaction, Hash, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the file that holds the checkpoint for a block.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the file, or null if the validator is not a
+   *   DifficultyValidator.
+   */
+  Path file(int num, Transaction transaction, Hash prevHash, HashValidator check) {
+    if (!(check instanceof DifficultyValidator)) {
+      return null;
+    } // if
+    // Lengths keep different source/target splits apart.
+    String key = num + ":" + transaction.getSource().length() + ":" + transaction.getSource()
+        + ":" + transaction.getTarget().length() + ":" + transaction.getTarget()
+        + ":" + transaction.getAmount() + ":" + prevHash
+        + ":" + ((DifficultyValidator) check).getTarget().toString(16);
+    try {
+      MessageDigest md = MessageDigest.getInstance("sha-256");
+      Hash name = new Hash(md.digest(key.getBytes(StandardCharsets.UTF_8)));
+      return this.dir.resolve(name + EXTENSION);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Invalid algorithm", e);
+    } // try/catch
+  } // file(int, Transaction, Hash, HashValidator)
+} // class NonceCheckpoints
@@ -0,0 +1,432 @@
+package edu.grinnell.csc207.blockchains;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashers for trying many nonces for one block. The parts of the block
+ * that do not change while mining (number, transaction, and previous
+ * hash) are encoded once, and checking a nonce against a
+ * DifficultyValidator allocates nothing. (Other validators are given a
+ * new Hash for each nonce, since they may keep it.)
+ *
+ * There are two engines. Our own SHA-256 engine compresses every block
+ * that lies wholly before the nonce once, into a saved midstate, and
+ * computes the message schedule of any block that lies wholly after it
+ * once, so each nonce only costs the compression of the one or two
+ * blocks that contain it. But when the JVM compiles MessageDigest's
+ * SHA-256 to the processor's SHA instructions, that is several times
+ * faster per block than any Java code, so there we hash the whole
+ * message with MessageDigest instead. Set the system property
+ * edu.grinnell.csc207.sha256 to "engine" or "digest" to choose.
+ *
+ * Both engines give the same hashes as the "sha-256" MessageDigest.
+ * Not thread safe; each mining thread needs its own hasher.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+class NonceHasher {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in a SHA-256 digest.
+   */
+  static final int DIGEST_BYTES = 32;
+
+  /**
+   * Whether to use our own engine rather than MessageDigest.
+   */
+  static final boolean USE_ENGINE = chooseEngine();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The digest, if we use MessageDigest (or null).
+   */
+  MessageDigest md;
+
+  /**
+   * The padded message, whose first length bytes are the encoded block.
+   */
+  byte[] message;
+
+  /**
+   * The length of the encoded block, in bytes.
+   */
+  int length;
+
+  /**
+   * The index of the first nonce byte in message.
+   */
+  int nonceOffset;
+
+  /**
+   * The state after every block before the nonce.
+   */
+  int[] midstate;
+
+  /**
+   * The words of the remaining blocks, with the most recent nonce.
+   */
+  int[] tail;
+
+  /**
+   * The full message schedules of the remaining blocks that do not
+   * contain the nonce (null for those that do).
+   */
+  int[][] schedules;
+
+  /**
+   * The index in tail of the first word containing part of the nonce.
+   */
+  int nonceWord;
+
+  /**
+   * The offset of the nonce within that word, in bytes.
+   */
+  int nonceShift;
+
+  /**
+   * The message bits that share the first nonce word with the nonce.
+   */
+  int before;
+
+  /**
+   * The message bits that share the last nonce word with the nonce
+   * (when the nonce spans three words).
+   */
+  int after;
+
+  /**
+   * The state while hashing.
+   */
+  int[] state;
+
+  /**
+   * The message schedule while hashing.
+   */
+  int[] w;
+
+  /**
+   * The output of MessageDigest (unused by our engine).
+   */
+  byte[] out;
+
+  /**
+   * Bytes 0 to 7 of the most recent hash, big-endian.
+   */
+  long h0;
+
+  /**
+   * Bytes 8 to 15 of the most recent hash, big-endian.
+   */
+  long h1;
+
+  /**
+   * Bytes 16 to 23 of the most recent hash, big-endian.
+   */
+  long h2;
+
+  /**
+   * Bytes 24 to 31 of the most recent hash, big-endian.
+   */
+  long h3;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new hasher for blocks with the given contents.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   */
+  NonceHasher(int num, Transaction transaction, Hash prevHash) {
+    this(num, transaction, prevHash, USE_ENGINE);
+  } // NonceHasher(int, Transaction, Hash)
+
+  /**
+   * Create a new hasher for blocks with the given contents, choosing
+   * the engine.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param engine
+   *   True to use our own engine and false to use MessageDigest.
+   */
+  NonceHasher(int num, Transaction transaction, Hash prevHash, boolean engine) {
+    byte[] sourcebytes = transaction.getSource().getBytes();
+    byte[] targetbytes = transaction.getTarget().getBytes();
+    this.nonceOffset = Integer.BYTES + sourcebytes.length + targetbytes.length
+        + Integer.BYTES + prevHash.length();
+    this.length = this.nonceOffset + Long.BYTES;
+    // The message, the 0x80 terminator, and the 64-bit bit count, padded
+    // to a whole number of blocks.
+    int blocks = (this.length + 1 + Long.BYTES + Sha256.BLOCK_BYTES - 1) / Sha256.BLOCK_BYTES;
+    byte[] message = new byte[blocks * Sha256.BLOCK_BYTES];
+    this.message = message;
+    int pos = putInt(message, 0, num);
+    System.arraycopy(sourcebytes, 0, message, pos, sourcebytes.length);
+    pos += sourcebytes.length;
+    System.arraycopy(targetbytes, 0, message, pos, targetbytes.length);
+    pos += targetbytes.length;
+    pos = putInt(message, pos, transaction.getAmount());
+    prevHash.writeTo(message, pos);
+    message[this.length] = (byte) 0x80;
+    long bits = (long) this.length * Byte.SIZE;
+    putInt(message, message.length - Long.BYTES, (int) (bits >>> Integer.SIZE));
+    putInt(message, message.length - Integer.BYTES, (int) bits);
+    this.out = new byte[DIGEST_BYTES];
+    if (!engine) {
+      try {
+        this.md = MessageDigest.getInstance("sha-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Invalid algorithm", e);
+      } // try/catch
+      return;
+    } // if
+
+    this.state = new int[Sha256.STATE_WORDS];
+    this.w = new int[Sha256.SCHEDULE_WORDS];
+    this.midstate = Sha256.INITIAL.clone();
+    int constant = this.nonceOffset / Sha256.BLOCK_BYTES;
+    for (int block = 0; block < constant; block++) {
+      loadBlock(message, block * Sha256.BLOCK_BYTES, this.w);
+      Sha256.expand(this.w);
+      Sha256.compress(this.midstate, this.w);
+    } // for
+
+    int tailStart = constant * Sha256.BLOCK_BYTES;
+    this.tail = new int[(message.length - tailStart) / Integer.BYTES];
+    for (int i = 0; i < this.tail.length; i++) {
+      this.tail[i] = Sha256.getInt(message, tailStart + i * Integer.BYTES);
+    } // for
+    this.nonceWord = (this.nonceOffset - tailStart) / Integer.BYTES;
+    this.nonceShift = (this.nonceOffset - tailStart) % Integer.BYTES;
+    this.before = this.tail[this.nonceWord];
+    if (this.nonceShift != 0) {
+      this.after = this.tail[this.nonceWord + 2];
+    } // if
+    int lastNonceWord = (this.nonceOffset + Long.BYTES - 1 - tailStart) / Integer.BYTES;
+    this.schedules = new int[blocks - constant][];
+    for (int block = 0; block < this.schedules.length; block++) {
+      if (block * Sha256.BLOCK_WORDS > lastNonceWord) {
+        this.schedules[block] = new int[Sha256.SCHEDULE_WORDS];
+        System.arraycopy(this.tail, block * Sha256.BLOCK_WORDS, this.schedules[block], 0,
+            Sha256.BLOCK_WORDS);
+        Sha256.expand(this.schedules[block]);
+      } // if
+    } // for
+  } // NonceHasher(int, Transaction, Hash, boolean)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Hash the block with the given nonce.
+   *
+   * @param nonce
+   *   The nonce to try.
+   *
+   * @return the hash of the block with that nonce.
+   */
+  Hash hash(long nonce) {
+    this.compute(nonce);
+    return new Hash(this.h0, this.h1, this.h2, this.h3);
+  } // hash(long)
+
+  /**
+   * Determine if the hash of the block with the given nonce meets a
+   * validator. A DifficultyValidator checks the words of the hash
+   * directly; any other validator gets a new Hash, which it may keep.
+   *
+   * @param nonce
+   *   The nonce to try.
+   * @param check
+   *   The validator.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  boolean meets(long nonce, HashValidator check) {
+    this.compute(nonce);
+    // Subclasses may check hashes differently, so only the class itself.
+    if (check.getClass() == DifficultyValidator.class) {
+      return ((DifficultyValidator) check).isValid(this.h0, this.h1, this.h2, this.h3);
+    } // if
+    return check.isValid(new Hash(this.h0, this.h1, this.h2, this.h3));
+  } // meets(long, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Hash the block with the given nonce into h0 to h3.
+   *
+   * @param nonce
+   *   The nonce to try.
+   */
+  void compute(long nonce) {
+    if (this.md != null) {
+      this.digest(nonce);
+      return;
+    } // if
+    int[] words = this.tail;
+    int first = this.nonceWord;
+    int shift = this.nonceShift * Byte.SIZE;
+    if (shift == 0) {
+      words[first] = (int) (nonce >>> Integer.SIZE);
+      words[first + 1] = (int) nonce;
+    } else {
+      words[first] = this.before | (int) (nonce >>> (Integer.SIZE + shift));
+      words[first + 1] = (int) (nonce >>> shift);
+      words[first + 2] = this.after | (int) (nonce << (Integer.SIZE - shift));
+    } // if/else
+    this.compressTail();
+    this.finish();
+  } // compute(long)
+
+  /**
+   * Hash the block with the given nonce into h0 to h3 using
+   * MessageDigest.
+   *
+   * @param nonce
+   *   The nonce to try.
+   */
+  void digest(long nonce) {
+    putInt(this.message, this.nonceOffset, (int) (nonce >>> Integer.SIZE));
+    putInt(this.message, this.nonceOffset + Integer.BYTES, (int) nonce);
+    this.md.update(this.message, 0, this.length);
+    try {
+      this.md.digest(this.out, 0, DIGEST_BYTES);
+    } catch (DigestException e) {
+      throw new IllegalStateException("Digest does not fit in output", e);
+    } // try/catch
+    this.h0 = Hash.pack(this.out, 0);
+    this.h1 = Hash.pack(this.out, Long.BYTES);
+    this.h2 = Hash.pack(this.out, 2 * Long.BYTES);
+    this.h3 = Hash.pack(this.out, 3 * Long.BYTES);
+  } // digest(long)
+
+  /**
+   * Compress the blocks after the midstate into state.
+   */
+  void compressTail() {
+    System.arraycopy(this.midstate, 0, this.state, 0, Sha256.STATE_WORDS);
+    for (int block = 0; block < this.schedules.length; block++) {
+      int[] schedule = this.schedules[block];
+      if (schedule == null) {
+        System.arraycopy(this.tail, block * Sha256.BLOCK_WORDS, this.w, 0, Sha256.BLOCK_WORDS);
+        Sha256.expand(this.w);
+        schedule = this.w;
+      } // if
+      Sha256.compress(this.state, schedule);
+    } // for
+  } // compressTail()
+
+  /**
+   * Copy the state into h0 to h3.
+   */
+  void finish() {
+    int[] st = this.state;
+    this.h0 = join(st[0], st[1]);
+    this.h1 = join(st[2], st[3]);
+    this.h2 = join(st[4], st[5]);
+    this.h3 = join(st[6], st[7]);
+  } // finish()
+
+  /**
+   * Decide whether to use our own engine: the one named by the system
+   * property, if any, or else ours unless the JVM says it uses the
+   * processor's SHA instructions.
+   *
+   * @return true to use our engine and false to use MessageDigest.
+   */
+  static boolean chooseEngine() {
+    String choice = System.getProperty("edu.grinnell.csc207.sha256", "");
+    if (!choice.isEmpty()) {
+      return choice.equals("engine");
+    } // if
+    try {
+      HotSpotDiagnosticMXBean vm =
+          ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+      try {
+        // Only visible with -XX:+UnlockDiagnosticVMOptions.
+        return !Boolean.parseBoolean(vm.getVMOption("UseSHA256Intrinsics").getValue());
+      } catch (IllegalArgumentException e) {
+        return !Boolean.parseBoolean(vm.getVMOption("UseSHA").getValue());
+      } // try/catch
+    } catch (RuntimeException | LinkageError e) {
+      // Not HotSpot, so we cannot tell; MessageDigest is never far off.
+      return false;
+    } // try/catch
+  } // chooseEngine()
+
+  /**
+   * Load one message block into the first words of a schedule.
+   *
+   * @param message
+   *   The message.
+   * @param pos
+   *   The index of the first byte of the block.
+   * @param schedule
+   *   The schedule to load into.
+   */
+  static void loadBlock(byte[] message, int pos, int[] schedule) {
+    for (int i = 0; i < Sha256.BLOCK_WORDS; i++) {
+      schedule[i] = Sha256.getInt(message, pos + i * Integer.BYTES);
+    } // for
+  } // loadBlock(byte[], int, int[])
+
+  /**
+   * Store an integer in big-endian order.
+   *
+   * @param bytes
+   *   Where to store the integer.
+   * @param pos
+   *   The index of the first byte to store.
+   * @param val
+   *   The integer to store.
+   *
+   * @return the index just past the stored integer.
+   */
+  static int putInt(byte[] bytes, int pos, int val) {
+    bytes[pos] = (byte) (val >>> 24);
+    bytes[pos + 1] = (byte) (val >>> 16);
+    bytes[pos + 2] = (byte) (val >>> 8);
+    bytes[pos + 3] = (byte) val;
+    return pos + Integer.BYTES;
+  } // putInt(byte[], int, int)
+
+  /**
+   * Join two words into a long.
+   *
+   * @param hi
+   *   The high word.
+   * @param lo
+   *   The low word.
+   *
+   * @return the long.
+   */
+  static long join(int hi, int lo) {
+    return ((long) hi << Integer.SIZE) | (lo & 0xFFFFFFFFL);
+  } // join(int, int)
+} // class NonceHasher
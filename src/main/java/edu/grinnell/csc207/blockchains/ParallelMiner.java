@@ -0,0 +1,392 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Miners that split the nonce search across several worker threads.
+ * Workers claim fixed-size chunks of nonces in increasing order and
+ * stop as soon as some worker has found a valid nonce below anything
+ * they have left to try, so the result is always the lowest valid
+ * nonce (the same one the sequential search in Block would find).
+ *
+ * A miner may also keep checkpoints, so that a search cut short (by a
+ * restart, say) resumes where it left off rather than at nonce 0.
+ *
+ * A miner created with its own pool should be closed once it is no
+ * longer needed.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class ParallelMiner implements AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of nonces a worker claims at a time.
+   */
+  static final long CHUNK_SIZE = 4096;
+
+  /**
+   * How many nonces a worker tries between checks of whether another
+   * worker has already found a lower valid nonce.
+   */
+  static final long CHECK_INTERVAL = 256;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pool that runs the workers.
+   */
+  ForkJoinPool pool;
+
+  /**
+   * The number of workers to use for each search.
+   */
+  int workers;
+
+  /**
+   * Where to keep checkpoints (or null, for none).
+   */
+  NonceCheckpoints checkpoints;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that uses the common pool, with one worker for
+   * each of its threads.
+   */
+  public ParallelMiner() {
+    this.pool = ForkJoinPool.commonPool();
+    this.workers = Math.max(1, this.pool.getParallelism());
+  } // ParallelMiner()
+
+  /**
+   * Create a new miner with its own pool of the given number of workers.
+   *
+   * @param numWorkers
+   *   The number of worker threads.
+   *
+   * @throws IllegalArgumentException
+   *   If numWorkers is not positive.
+   */
+  public ParallelMiner(int numWorkers) {
+    this(numWorkers, null);
+  } // ParallelMiner(int)
+
+  /**
+   * Create a new miner with its own pool of the given number of workers
+   * that resumes from and saves checkpoints.
+   *
+   * @param numWorkers
+   *   The number of worker threads.
+   * @param store
+   *   Where to keep checkpoints (or null, for none).
+   *
+   * @throws IllegalArgumentException
+   *   If numWorkers is not positive.
+   */
+  public ParallelMiner(int numWorkers, NonceCheckpoints store) {
+    if (numWorkers < 1) {
+      throw new IllegalArgumentException("Need at least one worker: " + numWorkers);
+    } // if
+    this.pool = new ForkJoinPool(numWorkers);
+    this.workers = numWorkers;
+    this.checkpoints = store;
+  } // ParallelMiner(int, NonceCheckpoints)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of workers used for each search.
+   *
+   * @return the number of workers.
+   */
+  public int getWorkers() {
+    return this.workers;
+  } // getWorkers()
+
+  /**
+   * Mine a block with the given contents.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return a block whose nonce is the lowest one that meets the
+   *   requirements of the validator.
+   */
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check) {
+    return this.mineAsync(num, transaction, prevHash, check).join();
+  } // mine(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Find the lowest nonce that gives a block with the given contents
+   * a valid hash.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the lowest valid nonce.
+   */
+  public long findNonce(int num, Transaction transaction, Hash prevHash, HashValidator check) {
+    return this.mine(num, transaction, prevHash, check).getNonce();
+  } // findNonce(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Start mining a block with the given contents in the background.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return the job that will complete with the mined block.
+   */
+  public MiningJob mineAsync(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) {
+    return this.start(new MiningJob(num, transaction, prevHash, null), check);
+  } // mineAsync(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Shut down the miner's own pool. Searches that have already started
+   * run until their jobs are done, but no new ones can be started. (A
+   * miner that uses the common pool leaves it alone.)
+   */
+  public void close() {
+    if (this.pool != ForkJoinPool.commonPool()) {
+      this.pool.shutdown();
+    } // if
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Start the workers for a job.
+   *
+   * @param job
+   *   The job describing the block to mine.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return job, which completes with the block once a nonce is found.
+   *
+   * @throws java.util.concurrent.RejectedExecutionException
+   *   If the miner has been closed.
+   */
+  MiningJob start(MiningJob job, HashValidator check) {
+    long first = (this.checkpoints == null)
+        ? 0
+        : this.checkpoints.load(job.num, job.transaction, job.prevHash, check);
+    Search search = new Search(job, check, this.checkpoints, first, this.workers);
+    CompletableFuture<?>[] parts = new CompletableFuture<?>[this.workers];
+    for (int i = 0; i < this.workers; i++) {
+      int worker = i;
+      parts[i] = CompletableFuture.runAsync(() -> search.run(worker), this.pool);
+    } // for
+    // If no nonce was found, the job was cancelled or went stale, so
+    // it is already done.
+    job.stopped = CompletableFuture.allOf(parts).handle((ignored, err) -> {
+      long nonce = search.found.get();
+      if (err != null) {
+        search.save();
+        job.completeExceptionally(err);
+      } else if (nonce != Long.MAX_VALUE) {
+        if (this.checkpoints != null) {
+          this.checkpoints.clear(job.num, job.transaction, job.prevHash, check);
+        } // if
+        job.complete(new Block(job.num, job.transaction, job.prevHash, nonce));
+      } // if/else
+      return null;
+    });
+    return job;
+  } // start(MiningJob, HashValidator)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * The state of one search, shared by its workers.
+   */
+  static class Search {
+    /**
+     * The job describing the block to mine.
+     */
+    MiningJob job;
+
+    /**
+     * The validator used to check the block.
+     */
+    HashValidator check;
+
+    /**
+     * Where to keep checkpoints (or null, for none).
+     */
+    NonceCheckpoints checkpoints;
+
+    /**
+     * The first nonce of the next unclaimed chunk.
+     */
+    AtomicLong nextChunk;
+
+    /**
+     * The lowest valid nonce found so far (or Long.MAX_VALUE).
+     */
+    AtomicLong found;
+
+    /**
+     * For each worker, a nonce at or below anything it has yet to try.
+     */
+    AtomicLongArray positions;
+
+    /**
+     * When a checkpoint was last saved, in nanoseconds.
+     */
+    AtomicLong lastSave;
+
+    /**
+     * The nonce in the last checkpoint saved (or the first nonce).
+     */
+    long saved;
+
+    /**
+     * Create the state for a new search.
+     *
+     * @param miningJob
+     *   The job describing the block to mine.
+     * @param validator
+     *   The validator used to check the block.
+     * @param store
+     *   Where to keep checkpoints (or null, for none).
+     * @param first
+     *   The first nonce to try.
+     * @param numWorkers
+     *   The number of workers.
+     */
+    Search(MiningJob miningJob, HashValidator validator, NonceCheckpoints store, long first,
+        int numWorkers) {
+      this.job = miningJob;
+      this.check = validator;
+      this.checkpoints = store;
+      this.nextChunk = new AtomicLong(first);
+      this.found = new AtomicLong(Long.MAX_VALUE);
+      this.positions = new AtomicLongArray(numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
+        this.positions.set(i, first);
+      } // for
+      this.lastSave = new AtomicLong(System.nanoTime());
+      this.saved = first;
+    } // Search(MiningJob, HashValidator, NonceCheckpoints, long, int)
+
+    /**
+     * Search chunks of nonces until every remaining chunk starts above
+     * the best nonce found so far, or until the job is done.
+     *
+     * @param worker
+     *   The number of the worker doing the search.
+     */
+    void run(int worker) {
+      NonceHasher hasher = new NonceHasher(this.job.num, this.job.transaction,
+          this.job.prevHash);
+      while (true) {
+        // Never claim a chunk before saying we might be working below it.
+        this.positions.set(worker, this.nextChunk.get());
+        long lo = this.nextChunk.getAndAdd(CHUNK_SIZE);
+        this.positions.set(worker, lo);
+        if ((lo >= this.found.get()) || this.job.shouldStop()) {
+          return;
+        } // if
+        this.maybeSave();
+        long tried = 0;
+        for (long nonce = lo; nonce < lo + CHUNK_SIZE; nonce++) {
+          tried++;
+          if (hasher.meets(nonce, this.check)) {
+            this.job.addTried(tried);
+            this.found.accumulateAndGet(nonce, Math::min);
+            return;
+          } // if
+          if (tried == CHECK_INTERVAL) {
+            this.job.addTried(tried);
+            tried = 0;
+            if ((this.found.get() < nonce) || this.job.shouldStop()) {
+              return;
+            } // if
+          } // if
+        } // for
+        this.job.addTried(tried);
+      } // while
+    } // run(int)
+
+    /**
+     * Find a nonce such that every lower one has been tried and failed.
+     *
+     * @return that nonce.
+     */
+    long searched() {
+      long result = this.nextChunk.get();
+      for (int i = 0; i < this.positions.length(); i++) {
+        result = Math.min(result, this.positions.get(i));
+      } // for
+      return result;
+    } // searched()
+
+    /**
+     * Save a checkpoint if one is due.
+     */
+    void maybeSave() {
+      if (this.checkpoints == null) {
+        return;
+      } // if
+      long last = this.lastSave.get();
+      long now = System.nanoTime();
+      if ((now - last >= this.checkpoints.interval) && this.lastSave.compareAndSet(last, now)) {
+        this.save();
+      } // if
+    } // maybeSave()
+
+    /**
+     * Save a checkpoint of how far the search has got, unless the job is
+     * already done or the search has not got past the last checkpoint.
+     * (Saves are one at a time, so a checkpoint never moves backward.)
+     */
+    synchronized void save() {
+      if ((this.checkpoints == null) || this.job.isDone()) {
+        return;
+      } // if
+      long searched = this.searched();
+      if (searched > this.saved) {
+        this.checkpoints.save(this.job.num, this.job.transaction, this.job.prevHash, this.check,
+            searched);
+        this.saved = searched;
+      } // if
+    } // save()
+  } // class Search
+} // class ParallelMiner
@@ -0,0 +1,151 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.grinnell.csc207.util.StringLongMap;
+
+/**
+ * A full check of a chain, split across a pool. Rehashing a block and
+ * checking its link and validity do not depend on any other block, so
+ * ranges of blocks are checked as separate tasks; the balances are
+ * replayed in order on the calling thread at the same time.
+ *
+ * Every stage stops once it is past the earliest problem found so far,
+ * and the problem reported is always the earliest one, exactly as a
+ * sequential check would report it.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+class ParallelVerifier extends RecursiveTask<BlockChain.Problem> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The version of this class, for serialization (which we do not use).
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The most blocks a task checks without splitting.
+   */
+  static final int THRESHOLD = BlockStore.SEGMENT_SIZE;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chain being checked.
+   */
+  BlockChain chain;
+
+  /**
+   * The height of the first block to check.
+   */
+  int lo;
+
+  /**
+   * The height just past the last block to check.
+   */
+  int hi;
+
+  /**
+   * The height of the earliest problem found so far (or
+   * Integer.MAX_VALUE).
+   */
+  AtomicInteger bound;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a task to check some of the blocks in a chain.
+   *
+   * @param target
+   *   The chain being checked.
+   * @param from
+   *   The height of the first block to check.
+   * @param to
+   *   The height just past the last block to check.
+   * @param earliest
+   *   The height of the earliest problem found so far.
+   */
+  ParallelVerifier(BlockChain target, int from, int to, AtomicInteger earliest) {
+    this.chain = target;
+    this.lo = from;
+    this.hi = to;
+    this.bound = earliest;
+  } // ParallelVerifier(BlockChain, int, int, AtomicInteger)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Check the blocks in this task's range.
+   *
+   * @return the earliest problem in the range, or null if there is none
+   *   (or if the range is past an earlier problem).
+   */
+  protected BlockChain.Problem compute() {
+    if (this.lo > this.bound.get()) {
+      return null;
+    } // if
+    if (this.hi - this.lo <= THRESHOLD) {
+      for (int height = this.lo; (height < this.hi) && (height <= this.bound.get()); height++) {
+        BlockChain.Problem problem = this.chain.checkBlock(height);
+        if (problem != null) {
+          this.bound.accumulateAndGet(height, Math::min);
+          return problem;
+        } // if
+      } // for
+      return null;
+    } // if
+    int mid = (this.lo + this.hi) >>> 1;
+    ParallelVerifier right = new ParallelVerifier(this.chain, mid, this.hi, this.bound);
+    right.fork();
+    BlockChain.Problem left =
+        new ParallelVerifier(this.chain, this.lo, mid, this.bound).compute();
+    return BlockChain.Problem.first(left, right.join());
+  } // compute()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Check every block of a chain.
+   *
+   * @param chain
+   *   The chain to check.
+   * @param pool
+   *   The pool that checks the blocks themselves.
+   * @param ledger
+   *   Empty balances, which are replayed up to the end of the chain (or
+   *   somewhere past the last good block, if there is a problem).
+   *
+   * @return the earliest problem, or null if there is none.
+   */
+  static BlockChain.Problem verify(BlockChain chain, ForkJoinPool pool, StringLongMap ledger) {
+    int size = chain.store.size();
+    AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+    ForkJoinTask<BlockChain.Problem> blocks = pool.submit(new ParallelVerifier(chain, 1, size,
+        bound));
+    BlockChain.Problem overdraft = null;
+    for (int height = 1; (height < size) && (height <= bound.get()); height++) {
+      overdraft = chain.checkBalance(ledger, height);
+      if (overdraft != null) {
+        bound.accumulateAndGet(height, Math::min);
+        break;
+      } // if
+      BlockChain.replay(ledger, chain.store.get(height).getTransaction(), 1);
+    } // for
+    return BlockChain.Problem.first(blocks.join(), overdraft);
+  } // verify(BlockChain, ForkJoinPool, StringLongMap)
+} // class ParallelVerifier
@@ -0,0 +1,117 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * The result of checking a chain: whether it is correct and, if not,
+ * where and why it first goes wrong.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class ValidationReport {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The height of the first bad block (or -1 if there is none).
+   */
+  int height;
+
+  /**
+   * A description of the problem (or null if there is none).
+   */
+  String problem;
+
+  /**
+   * The number of blocks checked.
+   */
+  int checked;
+
+  /**
+   * The number of blocks in the chain.
+   */
+  int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a report.
+   *
+   * @param found
+   *   The first problem (or null if there is none).
+   * @param blocksChecked
+   *   The number of blocks checked.
+   * @param chainSize
+   *   The number of blocks in the chain.
+   */
+  ValidationReport(BlockChain.Problem found, int blocksChecked, int chainSize) {
+    this.height = (found == null) ? -1 : found.height;
+    this.problem = (found == null) ? null : found.message;
+    this.checked = blocksChecked;
+    this.size = chainSize;
+  } // ValidationReport(BlockChain.Problem, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if the chain is correct.
+   *
+   * @return true if no problem was found and false otherwise.
+   */
+  public boolean isCorrect() {
+    return this.problem == null;
+  } // isCorrect()
+
+  /**
+   * Get the height of the first bad block.
+   *
+   * @return the height, or -1 if the chain is correct.
+   */
+  public int getHeight() {
+    return this.height;
+  } // getHeight()
+
+  /**
+   * Get a description of the first problem.
+   *
+   * @return the description, or null if the chain is correct.
+   */
+  public String getProblem() {
+    return this.problem;
+  } // getProblem()
+
+  /**
+   * Get the number of blocks checked. Blocks verified by an earlier
+   * check are not checked again, so this may be less than the size.
+   *
+   * @return the number of blocks checked.
+   */
+  public int getBlocksChecked() {
+    return this.checked;
+  } // getBlocksChecked()
+
+  /**
+   * Get the number of blocks in the chain when it was checked.
+   *
+   * @return the number of blocks.
+   */
+  public int getSize() {
+    return this.size;
+  } // getSize()
+
+  /**
+   * Convert to a string.
+   *
+   * @return a summary of the check.
+   */
+  public String toString() {
+    if (this.isCorrect()) {
+      return "The blockchain checks out.";
+    } // if
+    return "Problem at block " + this.height + ": " + this.problem;
+  } // toString()
+} // class ValidationReport
@@ -2,6 +2,8 @@ package edu.grinnell.csc207.main;
 
 import edu.grinnell.csc207.blockchains.Block;
 import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.ChainMetrics;
+import edu.grinnell.csc207.blockchains.DifficultyValidator;
 import edu.grinnell.csc207.blockchains.HashValidator;
 import edu.grinnell.csc207.blockchains.Transaction;
 
@@ -47,6 +49,7 @@ public class BlockChainUI {
         remove: removes the last block from the end of the chain
         check: checks that the block chain is valid
         users: prints a list of users
+        stats: prints mining, append, and check statistics
         balance: finds a user's balance
         transactions: prints out the chain of transactions
         blocks: prints out the chain of blocks (for debugging only)
@@ -69,18 +72,7 @@ public class BlockChainUI {
     BufferedReader eyes = new BufferedReader(new InputStreamReader(System.in));
 
     // Set up our blockchain.
-    HashValidator validator =
-        (h) -> {
-          if (h.length() < VALIDATOR_BYTES) {
-            return false;
-          } // if
-          for (int v = 0; v < VALIDATOR_BYTES; v++) {
-            if (h.get(v) != 0) {
-              return false;
-            } // if
-          } // for
-          return true;
-        };
+    HashValidator validator = DifficultyValidator.leadingZeroBits(VALIDATOR_BYTES * Byte.SIZE);
     BlockChain chain = new BlockChain(validator);
 
     instructions(pen);
@@ -129,15 +121,7 @@ public class BlockChainUI {
           break;
 
         case "check":
-          if (chain.isCorrect()) {
-            pen.printf("The blockchain checks out.");
-          } else {
-            try {
-              chain.check();
-            } catch (Exception e) {
-              pen.printf("%s", e);
-            } // try/catch
-          } // if/else
+          pen.printf("%s", chain.validate(false));
           break;
 
         case "help":
@@ -161,6 +145,10 @@ public class BlockChainUI {
           pen.printf("Removed last element");
           break;
 
+        case "stats":
+          pen.println(ChainMetrics.global());
+          break;
+
         case "transactions":
           Iterator<Transaction> transactions = chain.iterator();
           transactions.next();
@@ -7,6 +7,11 @@ import static java.lang.reflect.Array.newInstance;
  * and values of type V. Associative Arrays store key/value pairs
  * and permit you to look up values by key.
  *
+ * The pairs live in a hash table with open addressing: each key goes
+ * in the first free slot at or after the one its hash code picks
+ * (linear probing), and the table doubles whenever it would become
+ * more than half full, so lookups take constant expected time.
+ *
  * @param <K> the key type
  * @param <V> the value type
  *
@@ -19,10 +24,15 @@ public class AssociativeArray<K, V> {
   // +-----------+
 
   /**
-   * The default capacity of the initial array.
+   * The default capacity of the initial array. Must be a power of two.
    */
   static final int DEFAULT_CAPACITY = 16;
 
+  /**
+   * The largest fraction of the table we fill before expanding.
+   */
+  static final double MAX_LOAD = 0.5;
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -33,7 +43,8 @@ public class AssociativeArray<K, V> {
   int size;
 
   /**
-   * The array of key/value pairs.
+   * The hash table of key/value pairs (null for empty slots). Its
+   * length is always a power of two.
    */
   KVPair<K, V>[] pairs;
 
@@ -44,11 +55,8 @@ public class AssociativeArray<K, V> {
   /**
    * Create a new, empty associative array.
    */
-  @SuppressWarnings({ "unchecked" })
   public AssociativeArray() {
-    // Creating new arrays is sometimes a PITN.
-    this.pairs = (KVPair<K, V>[]) newInstance((new KVPair<K, V>()).getClass(),
-        DEFAULT_CAPACITY);
+    this.pairs = newTable(DEFAULT_CAPACITY);
     this.size = 0;
   } // AssociativeArray()
 
@@ -64,11 +72,11 @@ public class AssociativeArray<K, V> {
   public AssociativeArray<K, V> clone() {
     AssociativeArray<K, V> arr = new AssociativeArray<K, V>();
     arr.size = this.size;
-    while (arr.size > arr.pairs.length) {
-      arr.expand();
-    } // while
-    for (int i = 0; i < arr.size; i++) {
-      arr.pairs[i] = this.pairs[i].clone();
+    arr.pairs = newTable(this.pairs.length);
+    for (int i = 0; i < this.pairs.length; i++) {
+      if (this.pairs[i] != null) {
+        arr.pairs[i] = this.pairs[i].clone();
+      } // if
     } // for
     return arr;
   } // clone()
@@ -79,20 +87,16 @@ public class AssociativeArray<K, V> {
    * @return a string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}"
    */
   public String toString() {
-    if (size == 0) {
-      return "{}";
-    } else {
-      String str = "{";
-      for (int i = 0; i < size; i++) {
-        if (i == 0) {
-          str = str.concat(pairs[i].key + ":" + pairs[i].val);
-        } else {
-          str = str.concat(", " + pairs[i].key + ":" + pairs[i].val);
-        } // if-else
-      } // for
-      str = str.concat("}");
-      return str;
-    } // if-else
+    StringBuilder str = new StringBuilder("{");
+    for (KVPair<K, V> pair : this.pairs) {
+      if (pair != null) {
+        if (str.length() > 1) {
+          str.append(", ");
+        } // if
+        str.append(pair.key).append(":").append(pair.val);
+      } // if
+    } // for
+    return str.append("}").toString();
   } // toString()
 
   // +----------------+----------------------------------------------
@@ -115,29 +119,17 @@ public class AssociativeArray<K, V> {
     if (key == null) {
       throw new NullKeyException();
     } // if
-    int i;
-    try {
-      // if the key already exists
-      i = find(key);
-      pairs[i] = new KVPair<>(key, value);
-    } catch (Exception e) {
-      // key does not already exist
-      if (size == this.pairs.length) {
-        expand();
-        i = size;
-        pairs[i] = new KVPair<>(key, value);
-        size++;
-      } else {
-        for (int k = 0; k < this.pairs.length; k++) {
-          if (pairs[k] == null) {
-            i = k;
-            pairs[i] = new KVPair<>(key, value);
-            size++;
-            break;
-          } // if
-        } // for
-      } // if-else
-    } // try-catch
+    int i = this.slot(key);
+    if (this.pairs[i] != null) {
+      this.pairs[i].val = value;
+      return;
+    } // if
+    if ((this.size + 1) > this.pairs.length * MAX_LOAD) {
+      this.expand();
+      i = this.slot(key);
+    } // if
+    this.pairs[i] = new KVPair<K, V>(key, value);
+    this.size++;
   } // set(K,V)
 
   /**
@@ -153,17 +145,30 @@ public class AssociativeArray<K, V> {
    *   when the key is null or does not appear in the associative array.
    */
   public V get(K key) throws KeyNotFoundException {
-    if (key == null) {
+    int i = this.find(key);
+    if (i < 0) {
       throw new KeyNotFoundException();
     } // if
-    try {
-      int i = find(key);
-      return pairs[i].val;
-    } catch (Exception e) {
-      throw new KeyNotFoundException();
-    } // try-catch
+    return this.pairs[i].val;
   } // get(K)
 
+  /**
+   * Get the value associated with key, or a default if there is none.
+   *
+   * @param key
+   *   A key
+   * @param otherwise
+   *   The value to return if the key does not appear.
+   *
+   * @return
+   *   The corresponding value, or otherwise if key is null or does
+   *   not appear in the associative array.
+   */
+  public V getOrDefault(K key, V otherwise) {
+    int i = this.find(key);
+    return (i < 0) ? otherwise : this.pairs[i].val;
+  } // getOrDefault(K, V)
+
   /**
    * Determine if key appears in the associative array. Should
    * return false for the null key, since it cannot appear.
@@ -174,14 +179,22 @@ public class AssociativeArray<K, V> {
    * @return true if the key appears and false otherwise.
    */
   public boolean hasKey(K key) {
-    try {
-      find(key);
-      return true;
-    } catch (Exception e) {
-      return false;
-    } // try-catch
+    return this.find(key) >= 0;
   } // hasKey(K)
 
+  /**
+   * Determine if key appears in the associative array (the same as
+   * hasKey).
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return true if the key appears and false otherwise.
+   */
+  public boolean containsKey(K key) {
+    return this.find(key) >= 0;
+  } // containsKey(K)
+
   /**
    * Remove the key/value pair associated with a key. Future calls
    * to get(key) will throw an exception. If the key does not appear
@@ -191,18 +204,24 @@ public class AssociativeArray<K, V> {
    *   The key to remove.
    */
   public void remove(K key) {
-    try {
-      int i = find(key);
-      if (i == (this.size - 1)) {
-        pairs[i] = null;
-      } else {
-        pairs[i] = pairs[size - 1].clone();
-        pairs[size - 1] = null;
-      } // if-else
-      size--;
-    } catch (Exception e) {
+    int i = this.find(key);
+    if (i < 0) {
       return;
-    } // try-catch
+    } // if
+    this.pairs[i] = null;
+    this.size--;
+    // Move later pairs in the same run back, so that no pair is cut off
+    // from its home slot by the gap we just made.
+    int mask = this.pairs.length - 1;
+    int gap = i;
+    for (int j = (i + 1) & mask; this.pairs[j] != null; j = (j + 1) & mask) {
+      int home = home(this.pairs[j].key, mask);
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        this.pairs[gap] = this.pairs[j];
+        this.pairs[j] = null;
+        gap = j;
+      } // if
+    } // for
   } // remove(K)
 
   /**
@@ -219,32 +238,85 @@ public class AssociativeArray<K, V> {
   // +-----------------+
 
   /**
-   * Expand the underlying array.
+   * Expand the underlying table, putting every pair in its new slot.
    */
   void expand() {
-    this.pairs = java.util.Arrays.copyOf(this.pairs, this.pairs.length * 2);
+    KVPair<K, V>[] old = this.pairs;
+    this.pairs = newTable(old.length * 2);
+    for (KVPair<K, V> pair : old) {
+      if (pair != null) {
+        this.pairs[this.slot(pair.key)] = pair;
+      } // if
+    } // for
   } // expand()
 
   /**
-   * Find the index of the first entry in `pairs` that contains key.
-   * If no such entry is found, throws an exception.
+   * Find the index of the entry in `pairs` that contains key.
    *
    * @param key
    *   The key of the entry.
    *
    * @return
-   *   The index of the key, if found.
-   *
-   * @throws KeyNotFoundException
-   *   If the key does not appear in the associative array.
+   *   The index of the key, or -1 if it is null or does not appear in
+   *   the associative array.
    */
-  int find(K key) throws KeyNotFoundException {
-    for (int i = 0; i < size; i++) {
-      if (pairs[i].key.equals(key)) {
-        return i;
-      } // if
-    } // for
-    throw new KeyNotFoundException();
+  int find(K key) {
+    if (key == null) {
+      return -1;
+    } // if
+    int i = this.slot(key);
+    return (this.pairs[i] == null) ? -1 : i;
   } // find(K)
 
+  /**
+   * Find the slot that holds key, or the empty slot where it would go.
+   *
+   * @param key
+   *   The key to look for (not null).
+   *
+   * @return the index of that slot.
+   */
+  int slot(K key) {
+    int mask = this.pairs.length - 1;
+    int i = home(key, mask);
+    while ((this.pairs[i] != null) && !this.pairs[i].key.equals(key)) {
+      i = (i + 1) & mask;
+    } // while
+    return i;
+  } // slot(K)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Find the slot where probing for a key starts.
+   *
+   * @param key
+   *   The key.
+   * @param mask
+   *   One less than the size of the table.
+   *
+   * @return the index of the slot.
+   */
+  static int home(Object key, int mask) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  } // home(Object, int)
+
+  /**
+   * Create an empty table.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @param capacity
+   *   The number of slots.
+   *
+   * @return the table.
+   */
+  @SuppressWarnings({ "unchecked" })
+  static <K, V> KVPair<K, V>[] newTable(int capacity) {
+    // Creating new arrays is sometimes a PITN.
+    return (KVPair<K, V>[]) newInstance(KVPair.class, capacity);
+  } // newTable(int)
 } // class AssociativeArray
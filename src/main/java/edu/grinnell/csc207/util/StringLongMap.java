@@ -0,0 +1,316 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps from strings to longs (e.g., from account names to balances)
+ * that never box their values. Keys and values live in parallel arrays
+ * that form a hash table with open addressing and linear probing, and
+ * the table doubles whenever it would become more than half full.
+ * Changing the value of a key that is already present allocates nothing.
+ *
+ * Keys absent from the map have value 0, so, for example, addTo works
+ * the same whether or not the key is present.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class StringLongMap {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default capacity of the initial table. Must be a power of two.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The largest fraction of the table we fill before expanding.
+   */
+  static final double MAX_LOAD = 0.5;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of keys in the map.
+   */
+  int size;
+
+  /**
+   * The keys (null for empty slots). The length is a power of two.
+   */
+  String[] keys;
+
+  /**
+   * The values, in the same slots as their keys.
+   */
+  long[] values;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty map.
+   */
+  public StringLongMap() {
+    this.keys = new String[DEFAULT_CAPACITY];
+    this.values = new long[DEFAULT_CAPACITY];
+    this.size = 0;
+  } // StringLongMap()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this map.
+   *
+   * @return a new copy of the map.
+   */
+  public StringLongMap clone() {
+    StringLongMap copy = new StringLongMap();
+    copy.size = this.size;
+    copy.keys = this.keys.clone();
+    copy.values = this.values.clone();
+    return copy;
+  } // clone()
+
+  /**
+   * Convert the map to a string.
+   *
+   * @return a string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}"
+   */
+  public String toString() {
+    StringBuilder str = new StringBuilder("{");
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != null) {
+        if (str.length() > 1) {
+          str.append(", ");
+        } // if
+        str.append(this.keys[i]).append(":").append(this.values[i]);
+      } // if
+    } // for
+    return str.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Get the value of a key.
+   *
+   * @param key
+   *   The key.
+   *
+   * @return its value, or 0 if the key is null or absent.
+   */
+  public long get(String key) {
+    return this.getOrDefault(key, 0);
+  } // get(String)
+
+  /**
+   * Get the value of a key, or a default if the key is absent.
+   *
+   * @param key
+   *   The key.
+   * @param otherwise
+   *   The value to return if the key is null or absent.
+   *
+   * @return the value.
+   */
+  public long getOrDefault(String key, long otherwise) {
+    if (key == null) {
+      return otherwise;
+    } // if
+    int i = this.slot(key);
+    return (this.keys[i] == null) ? otherwise : this.values[i];
+  } // getOrDefault(String, long)
+
+  /**
+   * Determine if a key appears in the map.
+   *
+   * @param key
+   *   The key.
+   *
+   * @return true if the key appears and false otherwise.
+   */
+  public boolean containsKey(String key) {
+    return (key != null) && (this.keys[this.slot(key)] != null);
+  } // containsKey(String)
+
+  /**
+   * Set the value of a key.
+   *
+   * @param key
+   *   The key.
+   * @param value
+   *   Its new value.
+   *
+   * @throws NullPointerException
+   *   If key is null.
+   */
+  public void put(String key, long value) {
+    int i = this.claim(key);
+    this.values[i] = value;
+  } // put(String, long)
+
+  /**
+   * Add to the value of a key, adding the key (with value 0) first if it
+   * is absent.
+   *
+   * @param key
+   *   The key.
+   * @param delta
+   *   The amount to add.
+   *
+   * @return the new value.
+   *
+   * @throws NullPointerException
+   *   If key is null.
+   */
+  public long addTo(String key, long delta) {
+    int i = this.claim(key);
+    this.values[i] += delta;
+    return this.values[i];
+  } // addTo(String, long)
+
+  /**
+   * Remove a key. Does nothing if the key is absent.
+   *
+   * @param key
+   *   The key to remove.
+   */
+  public void remove(String key) {
+    if (key == null) {
+      return;
+    } // if
+    int i = this.slot(key);
+    if (this.keys[i] == null) {
+      return;
+    } // if
+    this.keys[i] = null;
+    this.size--;
+    // Move later keys in the same run back, so that no key is cut off
+    // from its home slot by the gap we just made.
+    int mask = this.keys.length - 1;
+    int gap = i;
+    for (int j = (i + 1) & mask; this.keys[j] != null; j = (j + 1) & mask) {
+      int home = home(this.keys[j], mask);
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        this.keys[gap] = this.keys[j];
+        this.values[gap] = this.values[j];
+        this.keys[j] = null;
+        gap = j;
+      } // if
+    } // for
+  } // remove(String)
+
+  /**
+   * Remove every key.
+   */
+  public void clear() {
+    Arrays.fill(this.keys, null);
+    this.size = 0;
+  } // clear()
+
+  /**
+   * Determine how many keys are in the map.
+   *
+   * @return the number of keys.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the slot that holds key, or the empty slot where it would go.
+   *
+   * @param key
+   *   The key to look for (not null).
+   *
+   * @return the index of that slot.
+   */
+  int slot(String key) {
+    int mask = this.keys.length - 1;
+    int i = home(key, mask);
+    while ((this.keys[i] != null) && !this.keys[i].equals(key)) {
+      i = (i + 1) & mask;
+    } // while
+    return i;
+  } // slot(String)
+
+  /**
+   * Find the slot that holds key, adding the key (with value 0) if it is
+   * absent.
+   *
+   * @param key
+   *   The key.
+   *
+   * @return the index of its slot.
+   *
+   * @throws NullPointerException
+   *   If key is null.
+   */
+  int claim(String key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    int i = this.slot(key);
+    if (this.keys[i] != null) {
+      return i;
+    } // if
+    if ((this.size + 1) > this.keys.length * MAX_LOAD) {
+      this.expand();
+      i = this.slot(key);
+    } // if
+    this.keys[i] = key;
+    this.values[i] = 0;
+    this.size++;
+    return i;
+  } // claim(String)
+
+  /**
+   * Double the table, putting every key in its new slot.
+   */
+  void expand() {
+    String[] oldKeys = this.keys;
+    long[] oldValues = this.values;
+    this.keys = new String[oldKeys.length * 2];
+    this.values = new long[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int j = this.slot(oldKeys[i]);
+        this.keys[j] = oldKeys[i];
+        this.values[j] = oldValues[i];
+      } // if
+    } // for
+  } // expand()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Find the slot where probing for a key starts.
+   *
+   * @param key
+   *   The key.
+   * @param mask
+   *   One less than the size of the table.
+   *
+   * @return the index of the slot.
+   */
+  static int home(String key, int mask) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  } // home(String, int)
+} // class StringLongMap
@@ -3,6 +3,12 @@ package edu.grinnell.csc207.blockchains;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import edu.grinnell.csc207.util.StringLongMap;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -458,9 +464,386 @@ public class TestBlockChain {
     Iterator<Block> blocks = chain.blocks();
     blocks.next();
     blocks.next().transaction = new Transaction("", "F", 1000);
-    assertEquals(1010, chain.balance("F"), "F's balance in modified chain");
-    assertFalse(chain.isCorrect(), "modified chain is incorrect");
+    // Balances come from the ledger built as blocks were appended, so
+    // tampering with a block afterwards does not change them.
+    assertEquals(110, chain.balance("F"), "F's balance in modified chain");
+    // Verified blocks are only rehashed by a deep check.
+    assertTrue(chain.isCorrect(), "verified blocks are not rehashed");
+    assertFalse(chain.isCorrect(true), "modified chain is incorrect");
     assertCheckFails(chain, "modified chain is incorrect");
   } // testModifiedChain()
 
+  /**
+   * Balances should follow appends and removals, one user or many at
+   * a time.
+   */
+  @Test
+  public void testBalanceIndex() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 50)));
+    chain.append(chain.mine(new Transaction("A", "B", 20)));
+    chain.append(chain.mine(new Transaction("B", "B", 5)));
+    assertArrayEquals(new long[] {30, 20, 0}, chain.balances("A", "B", "Nobody"),
+        "balances after appending");
+    assertTrue(chain.removeLast(), "remove self-transfer");
+    assertTrue(chain.removeLast(), "remove transfer");
+    assertArrayEquals(new long[] {50, 0}, chain.balances("A", "B"), "balances after removing");
+    assertEquals(0, chain.balances().length, "no users");
+  } // testBalanceIndex()
+
+  /**
+   * Blocks can be found by height.
+   */
+  @Test
+  public void testGetBlock() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block block1 = chain.mine(new Transaction("", "A", 50));
+    chain.append(block1);
+    Block block2 = chain.mine(new Transaction("A", "B", 20));
+    chain.append(block2);
+    assertEquals(block1, chain.getBlock(1), "block 1");
+    assertEquals(block2, chain.getBlock(2), "block 2");
+    assertEquals(chain.getHash(), chain.getBlock(chain.getSize() - 1).getHash(), "last block");
+    chain.removeLast();
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.getBlock(2));
+  } // testGetBlock()
+
+  /**
+   * Blocks can be found by hash, but only while they are in the chain.
+   */
+  @Test
+  public void testFindByHash() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block block1 = chain.mine(new Transaction("", "A", 50));
+    chain.append(block1);
+    Block block2 = chain.mine(new Transaction("A", "B", 20));
+    chain.append(block2);
+    assertEquals(block1, chain.findByHash(new Hash(block1.getHash().getBytes())), "block 1");
+    assertEquals(block2, chain.findByHash(block2.getHash()), "block 2");
+    assertEquals(chain.getBlock(0), chain.findByHash(block1.getPrevHash()), "first block");
+    assertTrue(chain.containsHash(block2.getHash()), "contains block 2");
+    chain.removeLast();
+    assertFalse(chain.containsHash(block2.getHash()), "block 2 removed");
+    assertEquals(null, chain.findByHash(block2.getHash()), "block 2 not found");
+    assertFalse(chain.containsHash(new Hash(new byte[] {1, 2, 3})), "unknown hash");
+  } // testFindByHash()
+
+  /**
+   * The watermark should follow appends, removals, and checks.
+   */
+  @Test
+  public void testWatermark() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 50)));
+    chain.append(chain.mine(new Transaction("A", "B", 20)));
+    assertEquals(2, chain.verifiedHeight, "append verifies");
+    chain.append(chain.mine(new Transaction("A", "B", -5)));
+    assertEquals(2, chain.verifiedHeight, "negative amount is not verified");
+    assertFalse(chain.isCorrect(), "negative amount");
+    assertTrue(chain.removeLast(), "remove negative amount");
+    assertTrue(chain.isCorrect(), "correct again");
+    chain.removeLast();
+    assertEquals(1, chain.verifiedHeight, "removal lowers the watermark");
+    chain.getBlock(1).nonce = 12;
+    assertFalse(chain.isCorrect(true), "deep check rehashes");
+    assertEquals(0, chain.verifiedHeight, "failed deep check resets the watermark");
+    assertCheckFails(chain, "shallow check now rehashes too");
+  } // testWatermark()
+
+  /**
+   * Balances should be checked as of each block, not just at the end,
+   * and the report should say where the chain goes wrong.
+   */
+  @Test
+  public void testValidate() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 50)));
+    chain.append(chain.mine(new Transaction("A", "B", 80)));
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    assertEquals(70, chain.balance("A"), "final balance is fine");
+    ValidationReport report = chain.validate(false);
+    assertFalse(report.isCorrect(), "overdraft in the middle");
+    assertEquals(2, report.getHeight(), "height of overdraft");
+    assertEquals("Negative balance for: A", report.getProblem(), "problem");
+    assertEquals(1, report.getBlocksChecked(), "stops at the overdraft");
+    assertEquals(4, report.getSize(), "size");
+    assertEquals(1, chain.verifiedHeight, "watermark before the overdraft");
+    assertCheckFails(chain, "overdraft in the middle");
+
+    chain.removeLast();
+    chain.removeLast();
+    chain.append(chain.mine(new Transaction("A", "B", 50)));
+    chain.append(chain.mine(new Transaction("B", "C", 20)));
+    report = chain.validate(false);
+    assertTrue(report.isCorrect(), "spending everything is fine");
+    assertEquals(-1, report.getHeight(), "no bad block");
+    assertEquals(0, report.getBlocksChecked(), "appends were verified");
+    assertEquals(3, chain.validate(true).getBlocksChecked(), "deep check");
+    assertEquals("The blockchain checks out.", report.toString(), "summary");
+  } // testValidate()
+
+  /**
+   * Build a chain spanning several snapshots, with deposits and
+   * transfers among a few users.
+   *
+   * @return the chain.
+   */
+  static BlockChain snapshotChain() {
+    String[] names = {"A", "B", "C", "D"};
+    BlockChain chain = new BlockChain((hash) -> true);
+    for (int i = 1; i < 3 * BlockChain.SNAPSHOT_INTERVAL + 40; i++) {
+      String source = (i % 3 == 0) ? "" : names[(i * 7) % names.length];
+      Transaction t = new Transaction(source, names[i % names.length], i % 11);
+      chain.append(new Block(chain.getSize() + 1, t, chain.getHash(), 0L));
+    } // for
+    return chain;
+  } // snapshotChain()
+
+  /**
+   * Find the balances as of a block by replaying every block before it.
+   *
+   * @param chain
+   *   The chain.
+   * @param height
+   *   The height of the block.
+   * @param users
+   *   The users whose balances we want.
+   *
+   * @return their balances.
+   */
+  static long[] replayed(BlockChain chain, int height, String... users) {
+    StringLongMap ledger = new StringLongMap();
+    for (int h = 1; h <= height; h++) {
+      BlockChain.replay(ledger, chain.getBlock(h).getTransaction(), 1);
+    } // for
+    long[] result = new long[users.length];
+    for (int i = 0; i < users.length; i++) {
+      result[i] = ledger.get(users[i]);
+    } // for
+    return result;
+  } // replayed(BlockChain, int, String...)
+
+  /**
+   * Balances as of past blocks should match a replay from the first
+   * block, whichever snapshot they start from.
+   */
+  @Test
+  public void testBalancesAt() {
+    BlockChain chain = snapshotChain();
+    int tip = chain.getSize() - 1;
+    int[] heights = {0, 1, 127, 128, 129, 255, 256, 257, 600, tip - 1, tip};
+    for (int height : heights) {
+      StringLongMap ledger = chain.balancesAt(height);
+      long[] actual = {ledger.get("A"), ledger.get("B"), ledger.get("C"), ledger.get("D")};
+      assertArrayEquals(replayed(chain, height, "A", "B", "C", "D"), actual,
+          "balances at " + height);
+    } // for
+    assertArrayEquals(replayed(chain, tip, "A", "B"), chain.balances("A", "B"), "unchanged");
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.balancesAt(tip + 1));
+  } // testBalancesAt()
+
+  /**
+   * Truncating to any height should leave the chain as if the later
+   * blocks had never been appended.
+   */
+  @Test
+  public void testTruncateTo() throws Exception {
+    int[] heights = {700, 512, 300, 5, 0};
+    BlockChain chain = snapshotChain();
+    for (int height : heights) {
+      Block removed = chain.getBlock(height + 1);
+      chain.truncateTo(height);
+      assertEquals(height + 1, chain.getSize(), "size after truncating to " + height);
+      assertArrayEquals(replayed(chain, height, "A", "B", "C", "D"),
+          chain.balances("A", "B", "C", "D"), "balances after truncating to " + height);
+      assertFalse(chain.containsHash(removed.getHash()), "removed block is not indexed");
+      assertEquals(height / BlockChain.SNAPSHOT_INTERVAL + 1, chain.snapshots.size(),
+          "snapshots after truncating to " + height);
+      assertEquals(chain.validate(true).isCorrect(), chain.isCorrect(), "watermark");
+    } // for
+    assertFalse(chain.removeLast(), "only the first block is left");
+
+    // Appending again takes new snapshots.
+    chain = snapshotChain();
+    chain.truncateTo(BlockChain.SNAPSHOT_INTERVAL - 1);
+    chain.append(chain.mine(new Transaction("", "E", 5)));
+    assertEquals(2, chain.snapshots.size(), "new snapshot");
+    assertEquals(5, chain.balancesAt(BlockChain.SNAPSHOT_INTERVAL).get("E"), "E in snapshot");
+    BlockChain empty = chain;
+    assertThrows(IndexOutOfBoundsException.class, () -> empty.truncateTo(-1));
+  } // testTruncateTo()
+
+  /**
+   * People who only appear in removed blocks should leave the list of
+   * users, whether the balances are rolled back from a snapshot or in
+   * place, and should appear once if they come back.
+   */
+  @Test
+  public void testTruncateUsers() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    for (int i = 1; i < 800; i++) {
+      Transaction t = (i < 300) ? new Transaction("", "A", 10) : new Transaction("A", "E", 1);
+      chain.append(new Block(chain.getSize() + 1, t, chain.getHash(), 0L));
+    } // for
+    assertArrayEquals(new String[] {"A", "E"}, users(chain), "A and E");
+
+    // Across a snapshot.
+    chain.truncateTo(260);
+    assertArrayEquals(new String[] {"A"}, users(chain), "E removed");
+    assertFalse(chain.balancesAt(260).containsKey("E"), "E not in the balances");
+    chain.append(chain.mine(new Transaction("A", "E", 1)));
+    assertArrayEquals(new String[] {"A", "E"}, users(chain), "E back once");
+
+    // In place.
+    assertTrue(chain.removeLast(), "remove E's block");
+    assertArrayEquals(new String[] {"A"}, users(chain), "E removed again");
+    chain.append(chain.mine(new Transaction("A", "E", 1)));
+    chain.append(chain.mine(new Transaction("E", "F", 1)));
+    assertArrayEquals(new String[] {"A", "E", "F"}, users(chain), "E back once more, and F");
+    assertEquals(3, chain.getUserList().size(), "no duplicates");
+  } // testTruncateUsers()
+
+  /**
+   * Readers should always see a consistent chain while another thread
+   * appends and removes blocks.
+   */
+  @Test
+  public void testConcurrentReads() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(new Block(2, new Transaction("", "A", 1000000), chain.getHash(), 0L));
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicReference<String> failure = new AtomicReference<String>();
+    Thread[] readers = new Thread[3];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(() -> {
+        while (!done.get() && (failure.get() == null)) {
+          long[] both = chain.balances("A", "B");
+          if (both[0] + both[1] != 1000000) {
+            failure.set("balances " + Arrays.toString(both));
+          } // if
+          Hash prev = null;
+          Iterator<Block> blocks = chain.blocks();
+          while (blocks.hasNext()) {
+            Block blk = blocks.next();
+            if ((prev != null) && !prev.equals(blk.getPrevHash())) {
+              failure.set("broken link at block " + blk.getNum());
+            } // if
+            prev = blk.getHash();
+          } // while
+          if (chain.findByHash(chain.getBlock(0).getHash()) == null) {
+            failure.set("first block not found");
+          } // if
+        } // while
+      });
+      readers[r].start();
+    } // for
+    for (int i = 0; i < 3000; i++) {
+      if ((i % 3 == 2) || (chain.getSize() < 3)) {
+        chain.append(new Block(chain.getSize() + 1, new Transaction("A", "B", 1),
+            chain.getHash(), 0L));
+      } else if (i % 3 == 0) {
+        chain.append(new Block(chain.getSize() + 1, new Transaction("A", "B", 1),
+            chain.getHash(), 0L));
+        chain.append(new Block(chain.getSize() + 1, new Transaction("B", "A", 1),
+            chain.getHash(), 0L));
+      } else {
+        chain.removeLast();
+      } // if/else
+    } // for
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    } // for
+    assertEquals(null, failure.get(), "readers saw a consistent chain");
+    assertTrue(chain.isCorrect(true), "chain is still correct");
+  } // testConcurrentReads()
+
+  /**
+   * Parallel streams of blocks and transactions should give the same
+   * results as walking the chain.
+   */
+  @Test
+  public void testStreams() {
+    BlockChain chain = snapshotChain();
+    long volume = 0;
+    for (Transaction t : chain) {
+      volume += t.getAmount();
+    } // for
+    assertEquals(volume,
+        chain.transactionStream().parallel().mapToLong(Transaction::getAmount).sum(),
+        "total volume");
+    assertEquals(chain.balance("A"), chain.transactionStream().parallel()
+        .mapToLong((t) -> (t.getTarget().equals("A") ? t.getAmount() : 0)
+            - (t.getSource().equals("A") ? t.getAmount() : 0))
+        .sum(), "A's balance");
+    List<Block> blocks = chain.blockStream().parallel().collect(Collectors.toList());
+    assertEquals(chain.getSize(), blocks.size(), "every block");
+    for (int i = 0; i < blocks.size(); i++) {
+      assertEquals(chain.getBlock(i), blocks.get(i), "block " + i + " in order");
+    } // for
+  } // testStreams()
+
+  /**
+   * Ranges, reverse walks, and the latest blocks should start where
+   * they are asked to.
+   */
+  @Test
+  public void testRanges() {
+    BlockChain chain = snapshotChain();
+    int size = chain.getSize();
+    Iterator<Block> range = chain.blocks(300, 303);
+    for (int i = 300; i < 303; i++) {
+      assertEquals(chain.getBlock(i), range.next(), "block " + i);
+    } // for
+    assertFalse(range.hasNext(), "range done");
+    assertFalse(chain.blocks(5, 5).hasNext(), "empty range");
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.blocks(0, size + 1));
+
+    Iterator<Block> down = chain.blocksDescending();
+    for (int i = size - 1; i >= 0; i--) {
+      assertEquals(chain.getBlock(i), down.next(), "descending " + i);
+    } // for
+    assertFalse(down.hasNext(), "descending done");
+
+    Iterator<Block> latest = chain.latest(2);
+    assertEquals(chain.getBlock(size - 1), latest.next(), "latest");
+    assertEquals(chain.getBlock(size - 2), latest.next(), "next latest");
+    assertFalse(latest.hasNext(), "latest done");
+    int count = 0;
+    for (Iterator<Block> all = chain.latest(size + 10); all.hasNext(); all.next()) {
+      count++;
+    } // for
+    assertEquals(size, count, "latest of more than the chain");
+    assertFalse(chain.latest(0).hasNext(), "latest none");
+  } // testRanges()
+
+  /**
+   * Mining a batch should give the same chain as mining and appending
+   * one block at a time.
+   */
+  @Test
+  public void testMineAll() throws Exception {
+    HashValidator v =
+        (hash) ->
+            (hash.length() >= 2) && (hash.get(0) == 3) && (hash.get(1) == 5);
+    List<Transaction> ts = List.of(new Transaction("", "A", 100),
+        new Transaction("A", "B", 30), new Transaction("B", "C", 10),
+        new Transaction("", "C", 5), new Transaction("C", "A", 15));
+    BlockChain expected = new BlockChain(v);
+    for (Transaction t : ts) {
+      expected.append(expected.mine(t));
+    } // for
+
+    BlockChain chain = new BlockChain(v);
+    List<Block> blocks = chain.mineAll(ts);
+    assertEquals(ts.size(), blocks.size(), "one block per transaction");
+    assertEquals(ts.size() + 1, chain.getSize(), "every block appended");
+    assertEquals(expected.getHash(), chain.getHash(), "same blocks as one at a time");
+    assertEquals(85, chain.balance("A"), "A's balance");
+    assertEquals(20, chain.balance("B"), "B's balance");
+    assertTrue(chain.isCorrect(), "batch-mined chain is correct");
+    chain.check();
+    assertTrue(chain.mineAll(List.of()).isEmpty(), "empty batch");
+  } // testMineAll()
+
 } // class TestBlockChain
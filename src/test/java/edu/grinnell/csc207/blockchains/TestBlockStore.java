@@ -0,0 +1,236 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our BlockStore class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestBlockStore {
+  /**
+   * Make a number of distinct blocks.
+   *
+   * @param count
+   *   The number of blocks.
+   *
+   * @return the blocks.
+   */
+  static Block[] blocks(int count) {
+    Block[] result = new Block[count];
+    Hash prev = new Hash(new byte[] {});
+    for (int i = 0; i < count; i++) {
+      result[i] = new Block(i, new Transaction("", "A", i), prev, 0L);
+      prev = result[i].getHash();
+    } // for
+    return result;
+  } // blocks(int)
+
+  /**
+   * Blocks can be found by height across several segments, and in order.
+   */
+  @Test
+  public void getAndIterate() {
+    Block[] expected = blocks(2 * BlockStore.SEGMENT_SIZE + 5);
+    BlockStore store = new BlockStore();
+    for (Block blk : expected) {
+      store.add(blk);
+    } // for
+    assertEquals(expected.length, store.size(), "size");
+    for (int i = 0; i < expected.length; i++) {
+      assertSame(expected[i], store.get(i), "block " + i);
+    } // for
+    Iterator<Block> it = store.iterator();
+    for (Block blk : expected) {
+      assertSame(blk, it.next(), "iterating");
+    } // for
+    assertFalse(it.hasNext(), "iterator done");
+    assertThrows(IndexOutOfBoundsException.class, () -> store.get(expected.length));
+    assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+  } // getAndIterate()
+
+  /**
+   * Truncating to various sizes keeps the right blocks, drops the rest,
+   * and lets us add again.
+   */
+  @Test
+  public void truncate() {
+    Block[] expected = blocks(3 * BlockStore.SEGMENT_SIZE);
+    int[] sizes = {3 * BlockStore.SEGMENT_SIZE, 2 * BlockStore.SEGMENT_SIZE + 7,
+        2 * BlockStore.SEGMENT_SIZE, BlockStore.SEGMENT_SIZE - 1, 1, 0};
+    for (int newSize : sizes) {
+      BlockStore store = new BlockStore();
+      for (Block blk : expected) {
+        store.add(blk);
+      } // for
+      store.truncate(newSize);
+      assertEquals(newSize, store.size(), "size after truncating to " + newSize);
+      if (newSize > 0) {
+        assertSame(expected[newSize - 1], store.last(), "last after truncating to " + newSize);
+      } // if
+      if (newSize < expected.length) {
+        // The slot of the first removed block is cleared.
+        int seg = newSize >>> BlockStore.SEGMENT_BITS;
+        if (store.segments[seg] != null) {
+          assertNull(store.segments[seg][newSize & BlockStore.SEGMENT_MASK], "cleared");
+        } // if
+      } // if
+      for (int i = newSize; i < expected.length; i++) {
+        store.add(expected[i]);
+      } // for
+      for (int i = 0; i < expected.length; i++) {
+        assertSame(expected[i], store.get(i), "block " + i + " after re-adding");
+      } // for
+    } // for
+    assertThrows(IndexOutOfBoundsException.class, () -> new BlockStore().truncate(1));
+  } // truncate()
+
+  /**
+   * Truncating clears slots in place and keeps a spare segment unless an
+   * iterator may still see them, in which case the iterator keeps the
+   * blocks it started with.
+   */
+  @Test
+  public void truncateShared() {
+    Block[] expected = blocks(2 * BlockStore.SEGMENT_SIZE + 10);
+    Block[] others = blocks(BlockStore.SEGMENT_SIZE + 20);
+    BlockStore store = new BlockStore();
+    for (Block blk : expected) {
+      store.add(blk);
+    } // for
+    Block[] first = store.segments[0];
+    store.truncate(BlockStore.SEGMENT_SIZE - 5);
+    assertSame(first, store.segments[0], "cleared in place");
+    assertNotNull(store.segments[1], "spare segment");
+    assertNull(store.segments[2], "no second spare");
+
+    Iterator<Block> it = store.iterator();
+    store.truncate(5);
+    assertNotSame(first, store.segments[0], "copied for the iterator");
+    for (int i = 5; i < others.length; i++) {
+      store.add(others[i]);
+    } // for
+    for (int i = 0; i < BlockStore.SEGMENT_SIZE - 5; i++) {
+      assertSame(expected[i], it.next(), "iterator sees block " + i);
+    } // for
+    assertFalse(it.hasNext(), "iterator done");
+    assertSame(others[BlockStore.SEGMENT_SIZE + 1], store.get(BlockStore.SEGMENT_SIZE + 1),
+        "added after copying");
+
+    Block[] copied = store.segments[0];
+    store.truncate(3);
+    assertSame(copied, store.segments[0], "in place once the copy is made");
+  } // truncateShared()
+
+  /**
+   * Iterators keep seeing their blocks through later truncations too,
+   * not just the first one after they were made.
+   */
+  @Test
+  public void truncateTwice() {
+    Block[] expected = blocks(3000);
+    Block[] others = blocks(3000);
+    BlockStore store = new BlockStore();
+    for (Block blk : expected) {
+      store.add(blk);
+    } // for
+    Iterator<Block> it = store.iterator();
+    Spliterator<Block> split = store.spliterator();
+    store.truncate(2500);
+    store.truncate(1500);
+    for (int i = 1500; i < others.length; i++) {
+      store.add(others[i]);
+    } // for
+    store.truncate(1000);
+
+    for (int i = 0; i < expected.length; i++) {
+      assertSame(expected[i], it.next(), "iterator sees block " + i);
+    } // for
+    assertFalse(it.hasNext(), "iterator done");
+    List<Block> seen = new ArrayList<Block>();
+    split.forEachRemaining(seen::add);
+    assertEquals(Arrays.asList(expected), seen, "spliterator sees every block");
+    assertEquals(1000, store.size(), "size");
+  } // truncateTwice()
+
+  /**
+   * Spliterators split along segment boundaries, know their sizes, and
+   * cover every block once, in order.
+   */
+  @Test
+  public void spliterator() {
+    Block[] expected = blocks(3 * BlockStore.SEGMENT_SIZE + 100);
+    BlockStore store = new BlockStore();
+    for (Block blk : expected) {
+      store.add(blk);
+    } // for
+    Spliterator<Block> second = store.spliterator();
+    assertTrue(second.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED
+        | Spliterator.SUBSIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL), "characteristics");
+    assertEquals(expected.length, second.getExactSizeIfKnown(), "size");
+    Spliterator<Block> first = second.trySplit();
+    assertEquals(BlockStore.SEGMENT_SIZE, first.estimateSize(), "split on a segment");
+    assertEquals(expected.length - BlockStore.SEGMENT_SIZE, second.estimateSize(), "rest");
+
+    List<Block> seen = new ArrayList<Block>();
+    assertTrue(first.tryAdvance(seen::add), "advance");
+    first.forEachRemaining(seen::add);
+    assertFalse(first.tryAdvance(seen::add), "first half done");
+    second.forEachRemaining(seen::add);
+    assertEquals(Arrays.asList(expected), seen, "every block once, in order");
+
+    Spliterator<Block> small = new BlockStore.Blocks(store.segments, 5, 6);
+    assertNull(small.trySplit(), "one block does not split");
+    store.truncate(10);
+    assertEquals(10, store.spliterator().estimateSize(), "after truncating");
+  } // spliterator()
+
+  /**
+   * Ranges can be walked in either direction, across segments.
+   */
+  @Test
+  public void ranges() {
+    Block[] expected = blocks(2 * BlockStore.SEGMENT_SIZE + 5);
+    BlockStore store = new BlockStore();
+    for (Block blk : expected) {
+      store.add(blk);
+    } // for
+    int[][] ranges = {{0, expected.length},
+        {BlockStore.SEGMENT_SIZE - 3, 2 * BlockStore.SEGMENT_SIZE + 2},
+        {7, 7}, {expected.length - 1, expected.length}};
+    for (int[] range : ranges) {
+      Iterator<Block> up = store.iterator(range[0], range[1], false);
+      for (int i = range[0]; i < range[1]; i++) {
+        assertSame(expected[i], up.next(), "up to " + i);
+      } // for
+      assertFalse(up.hasNext(), "up done");
+      Iterator<Block> down = store.iterator(range[0], range[1], true);
+      for (int i = range[1] - 1; i >= range[0]; i--) {
+        assertSame(expected[i], down.next(), "down to " + i);
+      } // for
+      assertFalse(down.hasNext(), "down done");
+      assertThrows(NoSuchElementException.class, down::next, "past the end");
+    } // for
+    assertThrows(IndexOutOfBoundsException.class, () -> store.iterator(3, 2, false));
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> store.iterator(0, expected.length + 1, true));
+  } // ranges()
+} // class TestBlockStore
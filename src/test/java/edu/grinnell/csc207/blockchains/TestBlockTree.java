@@ -0,0 +1,186 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our BlockTree class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestBlockTree {
+  /**
+   * Make a block that follows another.
+   *
+   * @param prev
+   *   The block before.
+   * @param height
+   *   The height of the new block.
+   * @param t
+   *   The transaction.
+   *
+   * @return the new block.
+   */
+  static Block after(Block prev, int height, Transaction t) {
+    return new Block(height + 1, t, prev.getHash(), 0L);
+  } // after(Block, int, Transaction)
+
+  /**
+   * Find the total work of some blocks that meet a validator without a
+   * target.
+   *
+   * @param blocks
+   *   The blocks.
+   *
+   * @return the total work.
+   */
+  static long work(List<Block> blocks) {
+    return blocks.size() * BlockTree.work((hash) -> true);
+  } // work(List<Block>)
+
+  /**
+   * Work is the number of hashes we expect to try to meet the target,
+   * whatever the hash a block happens to have.
+   */
+  @Test
+  public void work() {
+    assertEquals(1, BlockTree.work(DifficultyValidator.leadingZeroBits(0)), "no zeros");
+    assertEquals(8, BlockTree.work(DifficultyValidator.leadingZeroBits(3)), "three zeros");
+    assertEquals(1L << 16, BlockTree.work(DifficultyValidator.leadingZeroBits(16)),
+        "sixteen zeros");
+    BigInteger target = BigInteger.ONE.shiftLeft(254).multiply(BigInteger.valueOf(3));
+    assertEquals(1, BlockTree.work(DifficultyValidator.atMost(target)), "one in 1 1/3");
+    assertEquals(BlockTree.MAX_BLOCK_WORK,
+        BlockTree.work(DifficultyValidator.leadingZeroBits(200)), "capped");
+    assertEquals(1, BlockTree.work((hash) -> hash.get(0) == 0), "no target");
+
+    BlockTree tree = new BlockTree(new BlockChain(DifficultyValidator.leadingZeroBits(4)));
+    tree.add(tree.getChain().mine(new Transaction("", "A", 1)));
+    assertEquals(2 * 16, tree.work(), "two blocks of sixteen");
+  } // work()
+
+  /**
+   * The chain follows whichever branch has more work, and its balances
+   * follow the chain.
+   */
+  @Test
+  public void reorganize() throws Exception {
+    BlockTree tree = new BlockTree(new BlockChain((hash) -> true));
+    BlockChain chain = tree.getChain();
+    Block root = chain.getBlock(0);
+
+    // The first branch: deposits to A.
+    List<Block> a = new ArrayList<Block>();
+    a.add(after(root, 1, new Transaction("", "A", 10)));
+    for (int i = 2; i <= 3; i++) {
+      a.add(after(a.get(i - 2), i, new Transaction("", "A", 10)));
+    } // for
+    for (Block blk : a) {
+      assertTrue(tree.add(blk), "extend the chain");
+    } // for
+    assertFalse(tree.add(a.get(1)), "already in the tree");
+    long base = work(List.of(root));
+    assertEquals(base + work(a), tree.work(), "work of the chain");
+
+    // A second branch from the first block: deposits to B and
+    // transfers from A. Grow it until it has more work.
+    List<Block> b = new ArrayList<Block>();
+    b.add(a.get(0));
+    int height = 1;
+    while (work(b) <= work(a)) {
+      height++;
+      Transaction t = (height % 2 == 0) ? new Transaction("", "B", height)
+          : new Transaction("A", "B", 1);
+      Block blk = after(b.get(b.size() - 1), height, t);
+      b.add(blk);
+      assertEquals(work(b) > work(a), tree.add(blk), "add block " + height + " to b");
+    } // while
+    assertSame(b.get(b.size() - 1), chain.getBlock(chain.getSize() - 1), "b is the chain");
+    assertEquals(a.size() - 1, tree.sideBlocks(), "the rest of a is a side branch");
+    assertSame(a.get(2), tree.findByHash(a.get(2).getHash()), "side blocks can be found");
+    assertEquals(-1, chain.heightOf(a.get(2).getHash()), "a is not in the chain");
+    long[] expected = TestBlockChain.replayed(chain, chain.getSize() - 1, "A", "B");
+    assertEquals(expected[0], chain.balance("A"), "A after reorganizing");
+    assertEquals(expected[1], chain.balance("B"), "B after reorganizing");
+    assertTrue(chain.isCorrect(true), "chain is correct");
+
+    // Grow a until it has more work again.
+    Block tip = a.get(a.size() - 1);
+    while (work(a) <= work(b)) {
+      tip = after(tip, a.size() + 1, new Transaction("", "A", 10));
+      a.add(tip);
+      tree.add(tip);
+    } // while
+    assertSame(tip, chain.getBlock(chain.getSize() - 1), "a is the chain again");
+    assertEquals(10 * a.size(), chain.balance("A"), "A after reorganizing back");
+    assertEquals(0, chain.balance("B"), "B after reorganizing back");
+    assertEquals(b.size() - 1, tree.sideBlocks(), "b is a side branch");
+    assertTrue(chain.isCorrect(true), "chain is correct");
+  } // reorganize()
+
+  /**
+   * Side branches are dropped once they fork far enough below the end
+   * of the chain, along with the blocks that build on them.
+   */
+  @Test
+  public void prune() {
+    BlockTree tree = new BlockTree(new BlockChain((hash) -> true));
+    BlockChain chain = tree.getChain();
+    Block tip = chain.getBlock(0);
+    Block old = null;
+    Block oldChild = null;
+    for (int height = 1; height <= BlockTree.PRUNE_DEPTH; height++) {
+      if (height == 4) {
+        // A branch from block 1 that is no longer than the chain.
+        old = after(chain.getBlock(1), 2, new Transaction("", "B", 1));
+        oldChild = after(old, 3, new Transaction("", "B", 2));
+        assertFalse(tree.add(old), "old side block");
+        assertFalse(tree.add(oldChild), "old side block's child");
+      } // if
+      tip = after(tip, height, new Transaction("", "A", 1));
+      assertTrue(tree.add(tip), "extend the chain to " + height);
+    } // for
+    Block recent = after(chain.getBlock(chain.getSize() - 3), chain.getSize() - 2,
+        new Transaction("", "C", 1));
+    assertFalse(tree.add(recent), "recent side block");
+    assertEquals(3, tree.sideBlocks(), "nothing dropped yet");
+
+    for (int i = 0; i < BlockTree.PRUNE_INTERVAL; i++) {
+      tip = after(tip, chain.getSize(), new Transaction("", "A", 1));
+      tree.add(tip);
+    } // for
+    assertEquals(1, tree.sideBlocks(), "old branch dropped");
+    assertNull(tree.findByHash(oldChild.getHash()), "child dropped too");
+    assertSame(recent, tree.findByHash(recent.getHash()), "recent branch kept");
+    Block late = after(oldChild, 4, new Transaction("", "B", 3));
+    assertThrows(IllegalArgumentException.class, () -> tree.add(late), "builds on a dropped block");
+  } // prune()
+
+  /**
+   * Blocks that do not fit are turned away.
+   */
+  @Test
+  public void badBlocks() {
+    BlockTree tree = new BlockTree(new BlockChain((hash) -> hash.get(0) != 7));
+    Block root = tree.getChain().getBlock(0);
+    Block orphan = new Block(3, new Transaction("", "A", 1), new Hash(new byte[] {1, 2}), 0L);
+    assertThrows(IllegalArgumentException.class, () -> tree.add(orphan), "unknown parent");
+    Block first = after(root, 1, new Transaction("", "A", 1));
+    first.nonce = 99;
+    assertThrows(IllegalArgumentException.class, () -> tree.add(first), "wrong hash");
+    assertNull(tree.findByHash(first.getHash()), "not kept");
+    assertEquals(0, tree.sideBlocks(), "nothing kept");
+  } // badBlocks()
+} // class TestBlockTree
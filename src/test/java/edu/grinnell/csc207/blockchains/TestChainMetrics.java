@@ -0,0 +1,74 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our ChainMetrics and LatencyHistogram classes.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestChainMetrics {
+  /**
+   * Histograms summarize what they record.
+   */
+  @Test
+  public void histogram() {
+    LatencyHistogram h = new LatencyHistogram();
+    assertEquals(0, h.getPercentile(50), "empty histogram");
+    for (int i = 1; i <= 100; i++) {
+      h.record(i * 1000);
+    } // for
+    assertEquals(100, h.getCount(), "count");
+    assertEquals(50500, h.getMean(), 0.001, "mean");
+    assertEquals(100000, h.getMax(), "max");
+    long p50 = h.getPercentile(50);
+    assertTrue((p50 >= 50000) && (p50 < 100000), "p50 within a factor of two: " + p50);
+    assertEquals(100000, h.getPercentile(100), "p100 is the max");
+    h.reset();
+    assertEquals(0, h.getCount(), "count after reset");
+  } // histogram()
+
+  /**
+   * Mining, appending, and checking are all recorded.
+   */
+  @Test
+  public void recorded() {
+    ChainMetrics metrics = ChainMetrics.global();
+    long attempted = metrics.getHashesAttempted();
+    long computed = metrics.getHashesComputed();
+    long mined = metrics.getBlocksMined();
+    long appends = metrics.getAppendLatency().getCount();
+    long checks = metrics.getCheckLatency().getCount();
+
+    BlockChain chain = new BlockChain((h) -> h.get(0) == 0);
+    Block block = chain.mine(new Transaction("", "A", 5));
+    chain.append(block);
+    chain.isCorrect();
+
+    assertTrue(metrics.getHashesAttempted() - attempted > block.getNonce(), "nonces counted");
+    assertTrue(metrics.getHashesComputed() > computed, "hash computed by append");
+    assertTrue(metrics.getBlocksMined() >= mined + 2, "genesis and block mined");
+    assertTrue(metrics.getAppendLatency().getCount() > appends, "append timed");
+    assertTrue(metrics.getCheckLatency().getCount() > checks, "check timed");
+  } // recorded()
+
+  /**
+   * The global metrics can be published through JMX.
+   */
+  @Test
+  public void jmx() throws Exception {
+    ChainMetrics.registerMBean();
+    ChainMetrics.registerMBean();
+    Object attempted = ManagementFactory.getPlatformMBeanServer()
+        .getAttribute(new ObjectName(ChainMetrics.JMX_NAME), "HashesAttempted");
+    assertTrue(attempted instanceof Long, "attribute readable");
+  } // jmx()
+} // class TestChainMetrics
@@ -0,0 +1,91 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our DifficultyValidator class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestDifficultyValidator {
+  /**
+   * Build a 32-byte hash from its leading bytes.
+   */
+  static Hash hash(int... leading) {
+    byte[] bytes = new byte[32];
+    for (int i = 0; i < leading.length; i++) {
+      bytes[i] = (byte) leading[i];
+    } // for
+    return new Hash(bytes);
+  } // hash(int...)
+
+  /**
+   * Leading zero bits, including counts that are not whole bytes.
+   */
+  @Test
+  public void leadingZeroBits() {
+    HashValidator v = DifficultyValidator.leadingZeroBits(12);
+    assertTrue(v.isValid(hash(0, 0x0F, 0xFF)), "exactly 12 zero bits");
+    assertTrue(v.isValid(hash(0, 0, 0xFF)), "more than 12 zero bits");
+    assertFalse(v.isValid(hash(0, 0x10)), "11 zero bits");
+    assertFalse(v.isValid(hash(0x80)), "no zero bits");
+    assertTrue(DifficultyValidator.leadingZeroBits(0).isValid(hash(0xFF, 0xFF)),
+        "zero bits accepts everything");
+    assertTrue(DifficultyValidator.leadingZeroBits(256).isValid(hash()), "all zero");
+    assertFalse(DifficultyValidator.leadingZeroBits(256).isValid(hash(0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1)),
+        "one bit set at the end");
+  } // leadingZeroBits()
+
+  /**
+   * Leading zero bytes agree with the byte-at-a-time check.
+   */
+  @Test
+  public void sameAsBytes() {
+    HashValidator bytes = (h) -> (h.get(0) == 0) && (h.get(1) == 0);
+    HashValidator bits = DifficultyValidator.leadingZeroBits(16);
+    for (int i = 0; i < 256; i++) {
+      Hash h = new Block(i, new Transaction("", "A", i), hash(), (long) i).getHash();
+      assertEquals(bytes.isValid(h), bits.isValid(h), "hash " + h);
+    } // for
+  } // sameAsBytes()
+
+  /**
+   * Targets that are not powers of two.
+   */
+  @Test
+  public void target() {
+    BigInteger target = BigInteger.valueOf(0x1234).shiftLeft(240);
+    DifficultyValidator v = DifficultyValidator.atMost(target);
+    assertEquals(target, v.getTarget(), "target round trip");
+    assertTrue(v.isValid(hash(0x12, 0x34)), "equal to target");
+    assertTrue(v.isValid(hash(0x12, 0x33, 0xFF, 0xFF)), "below target");
+    assertFalse(v.isValid(hash(0x12, 0x34, 0, 0, 0, 0, 0, 0, 0, 1)), "just above target");
+    assertFalse(v.isValid(new Hash(new byte[] {0})), "wrong length");
+    assertThrows(IllegalArgumentException.class,
+        () -> DifficultyValidator.atMost(BigInteger.ONE.shiftLeft(256)));
+    assertThrows(IllegalArgumentException.class,
+        () -> DifficultyValidator.leadingZeroBits(257));
+  } // target()
+
+  /**
+   * The validator works for mining and chains.
+   */
+  @Test
+  public void mining() throws Exception {
+    BlockChain chain = new BlockChain(DifficultyValidator.leadingZeroBits(10));
+    chain.append(chain.mine(new Transaction("", "A", 10)));
+    chain.append(chain.mine(new Transaction("A", "B", 5)));
+    assertTrue(chain.isCorrect(), "mined chain is correct");
+    chain.check();
+  } // mining()
+} // class TestDifficultyValidator
@@ -6,6 +6,8 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
+import java.nio.ByteBuffer;
+
 import org.junit.jupiter.api.Test;
 
 
@@ -106,5 +108,45 @@ public class TestHash {
     assertFalse(h.equals(new Hash(bytes)), 
        "a hash does not equal a hash made from its modified bytes");
   } // testReturnBytes
-  
+
+  /**
+   * Hashes of every length up to and past 32 bytes keep their bytes,
+   * and equal hashes have equal hash codes.
+   */
+  @Test
+  public void testLengths() {
+    for (int len = 0; len <= 40; len++) {
+      byte[] bytes = new byte[len];
+      for (int i = 0; i < len; i++) {
+        bytes[i] = (byte) (i * 37 + 200);
+      } // for
+      Hash h = new Hash(bytes);
+      assertEquals(len, h.length(), "length " + len);
+      assertArrayEquals(bytes, h.getBytes(), "bytes of length " + len);
+      assertEquals(new Hash(bytes), h, "equal at length " + len);
+      assertEquals(new Hash(bytes).hashCode(), h.hashCode(), "hash code at length " + len);
+      assertNotEquals(new Hash(new byte[len + 1]), h, "longer at length " + len);
+      if (len > 0) {
+        bytes[len - 1]++;
+        assertNotEquals(new Hash(bytes), h, "last byte differs at length " + len);
+      } // if
+    } // for
+  } // testLengths
+
+  /**
+   * Writing a hash puts its bytes where we asked.
+   */
+  @Test
+  public void testWriteTo() {
+    Hash h = new Hash(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+    byte[] dest = new byte[13];
+    assertEquals(12, h.writeTo(dest, 2), "position after writing");
+    assertArrayEquals(new byte[] {0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 0}, dest,
+        "bytes written to an array");
+    ByteBuffer buf = ByteBuffer.allocate(11);
+    buf.put((byte) 99);
+    h.writeTo(buf);
+    assertArrayEquals(new byte[] {99, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, buf.array(),
+        "bytes written to a buffer");
+  } // testWriteTo
 } // class TestHash
@@ -0,0 +1,155 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our Mempool class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestMempool {
+  /**
+   * Make a chain in which A has some money.
+   *
+   * @param amount
+   *   How much A has.
+   *
+   * @return the chain.
+   */
+  static BlockChain chain(int amount) {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", amount)));
+    return chain;
+  } // chain(int)
+
+  /**
+   * Transactions come out by priority, and in order of arrival when
+   * their priorities are equal.
+   */
+  @Test
+  public void order() {
+    Transaction[] ts = {new Transaction("", "B", 5), new Transaction("", "C", 20),
+        new Transaction("A", "B", 5), new Transaction("", "D", 1)};
+    Mempool pool = new Mempool(chain(100));
+    for (Transaction t : ts) {
+      assertTrue(pool.submit(t), "submit " + t);
+    } // for
+    assertEquals(4, pool.size(), "size");
+    assertEquals(List.of(ts[1], ts[0], ts[2]), pool.drain(3), "by amount");
+    assertEquals(List.of(ts[3]), pool.drain(3), "rest");
+
+    pool = new Mempool(chain(100), Mempool.BY_ARRIVAL);
+    for (Transaction t : ts) {
+      pool.submit(t);
+    } // for
+    assertEquals(List.of(ts), pool.drain(10), "by arrival");
+  } // order()
+
+  /**
+   * Duplicates, negative amounts, and overdrafts (counting what is
+   * already pending) are turned away until pending amounts are released.
+   */
+  @Test
+  public void admission() {
+    Mempool pool = new Mempool(chain(100));
+    assertTrue(pool.submit(new Transaction("A", "B", 60)), "affordable");
+    assertFalse(pool.submit(new Transaction("A", "B", 60)), "duplicate");
+    assertFalse(pool.submit(new Transaction("A", "C", 50)), "overdraft with pending");
+    assertFalse(pool.submit(new Transaction("B", "C", 10)), "pending money does not count");
+    assertFalse(pool.submit(new Transaction("", "C", -10)), "negative amount");
+    assertTrue(pool.submit(new Transaction("A", "C", 40)), "exactly affordable");
+    assertEquals(100, pool.reserved("A"), "reserved");
+
+    List<Transaction> batch = pool.drain(1);
+    assertFalse(pool.submit(batch.get(0)), "drained but not released");
+    pool.release(batch);
+    assertEquals(40, pool.reserved("A"), "reserved after release");
+    assertTrue(pool.submit(new Transaction("A", "D", 60)), "affordable after release");
+  } // admission()
+
+  /**
+   * Concurrent submissions never reserve more than a source has.
+   */
+  @Test
+  public void concurrentSubmit() throws Exception {
+    Mempool pool = new Mempool(chain(5000));
+    AtomicInteger accepted = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      int id = i;
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          if (pool.submit(new Transaction("A", "T" + id + "-" + j, 1))) {
+            accepted.incrementAndGet();
+          } // if
+        } // for
+      });
+      threads[i].start();
+    } // for
+    for (Thread t : threads) {
+      t.join();
+    } // for
+    assertEquals(5000, accepted.get(), "accepted");
+    assertEquals(5000, pool.size(), "size");
+    assertEquals(5000, pool.reserved("A"), "reserved");
+  } // concurrentSubmit()
+
+  /**
+   * Mining a batch appends it to the chain and releases it.
+   */
+  @Test
+  public void mineBatch() throws Exception {
+    BlockChain chain = chain(100);
+    Mempool pool = new Mempool(chain);
+    pool.submit(new Transaction("A", "B", 30));
+    pool.submit(new Transaction("A", "C", 70));
+    pool.submit(new Transaction("", "B", 5));
+    assertEquals(3, pool.mineBatch(10).size(), "blocks mined");
+    assertEquals(0, pool.size(), "pool empty");
+    assertEquals(0, pool.reserved("A"), "nothing reserved");
+    assertEquals(0, chain.balance("A"), "A");
+    assertEquals(35, chain.balance("B"), "B");
+    assertTrue(chain.isCorrect(true), "chain correct");
+  } // mineBatch()
+
+  /**
+   * If mining a batch fails partway, the transactions that made it into
+   * the chain are released and the rest go back into the pool, in order.
+   */
+  @Test
+  public void mineBatchFails() {
+    Hash[] bad = {null};
+    BlockChain chain = new BlockChain((hash) -> {
+      if (hash.equals(bad[0])) {
+        throw new IllegalStateException("Cannot mine this block");
+      } // if
+      return true;
+    });
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    Transaction[] ts = {new Transaction("", "B", 5), new Transaction("A", "B", 60),
+        new Transaction("A", "C", 10)};
+    Block first = new Block(chain.getSize() + 1, ts[0], chain.getHash(), 0L);
+    bad[0] = new Block(chain.getSize() + 2, ts[1], first.getHash(), 0L).getHash();
+
+    Mempool pool = new Mempool(chain, Mempool.BY_ARRIVAL);
+    for (Transaction t : ts) {
+      pool.submit(t);
+    } // for
+    assertThrows(IllegalStateException.class, () -> pool.mineBatch(10), "second block fails");
+    assertEquals(first.getHash(), chain.getHash(), "first block appended");
+    assertEquals(2, pool.size(), "the rest are back");
+    assertEquals(70, pool.reserved("A"), "still reserved");
+    assertFalse(pool.submit(ts[1]), "still pending");
+    assertEquals(List.of(ts[1], ts[2]), pool.drain(10), "in their old order");
+  } // mineBatchFails()
+} // class TestMempool
@@ -0,0 +1,81 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of mining in the background.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestMiningJob {
+  /**
+   * Mining in the background gives the same block as mining directly.
+   */
+  @Test
+  public void sameAsSynchronous() {
+    HashValidator v = (h) -> (h.get(0) == 1) && (h.get(1) == 1);
+    BlockChain chain = new BlockChain(v);
+    Transaction t = new Transaction("", "A", 10);
+    MiningJob job = chain.mineAsync(t);
+    Block block = job.join();
+    assertEquals(chain.mine(t).getNonce(), block.getNonce(), "same nonce");
+    assertTrue(job.getNoncesTried() > block.getNonce(), "tried at least nonces up to result");
+    assertTrue(job.getHashRate() > 0, "positive hash rate");
+    chain.append(block);
+    assertEquals(2, chain.getSize(), "mined block can be appended");
+  } // sameAsSynchronous()
+
+  /**
+   * Cancelling a job stops it.
+   */
+  @Test
+  public void cancel() throws Exception {
+    MiningJob job = new ParallelMiner(2).mineAsync(1, new Transaction("", "A", 1),
+        new Hash(new byte[] {}), (h) -> false);
+    Thread.sleep(50);
+    assertTrue(job.cancel(true), "cancel succeeds");
+    assertThrows(CancellationException.class, job::join);
+    long tried = job.getNoncesTried();
+    Thread.sleep(50);
+    assertTrue(job.getNoncesTried() - tried <= 2 * ParallelMiner.CHECK_INTERVAL,
+        "workers stop soon after cancellation");
+  } // cancel()
+
+  /**
+   * Deadlines stop a job.
+   */
+  @Test
+  public void timeout() {
+    MiningJob job = new ParallelMiner(2).mineAsync(1, new Transaction("", "A", 1),
+        new Hash(new byte[] {}), (h) -> false);
+    job.orTimeout(50, TimeUnit.MILLISECONDS);
+    CompletionException e = assertThrows(CompletionException.class, job::join);
+    assertTrue(e.getCause() instanceof TimeoutException, "times out");
+  } // timeout()
+
+  /**
+   * Changing the end of the chain cancels jobs mining on the old end.
+   */
+  @Test
+  public void staleTip() {
+    boolean[] accept = {true};
+    BlockChain chain = new BlockChain((h) -> accept[0]);
+    MiningJob initial = chain.mineAsync(new Transaction("", "A", 1));
+    chain.append(initial.join());
+    accept[0] = false;
+    MiningJob job = chain.mineAsync(new Transaction("", "B", 1));
+    chain.removeLast();
+    assertThrows(CancellationException.class, job::join);
+  } // staleTip()
+} // class TestMiningJob
@@ -0,0 +1,85 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our MiningService class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestMiningService {
+  /**
+   * Many requests all get the same blocks as sequential mining.
+   */
+  @Test
+  public void manyRequests() {
+    HashValidator v = (h) -> h.get(0) == 0;
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    try (MiningService service = new MiningService(2)) {
+      ArrayList<MiningJob> jobs = new ArrayList<MiningJob>();
+      for (int i = 0; i < 50; i++) {
+        jobs.add(service.submit(3, new Transaction("", "U" + i, i), ph, v));
+      } // for
+      for (int i = 0; i < 50; i++) {
+        Block expected = new Block(3, new Transaction("", "U" + i, i), ph, v);
+        assertEquals(expected.getNonce(), jobs.get(i).join().getNonce(), "nonce " + i);
+      } // for
+    } // try
+  } // manyRequests()
+
+  /**
+   * Identical requests share one search, but cancelling one does not
+   * cancel the other.
+   */
+  @Test
+  public void sharedSearch() {
+    HashValidator v = (h) -> (h.get(0) == 0) && (h.get(1) == 0) && (h.get(2) == 0);
+    Transaction t = new Transaction("A", "B", 1);
+    Hash ph = new Hash(new byte[] {9});
+    try (MiningService service = new MiningService(1)) {
+      MiningJob first = service.submit(1, t, ph, v);
+      MiningJob second = service.submit(1, t, ph, v);
+      assertEquals(1, service.getPending(), "one shared search");
+      first.cancel(true);
+      assertFalse(second.isDone(), "second request still waiting");
+      second.cancel(true);
+    } // try
+  } // sharedSearch()
+
+  /**
+   * A hopeless request does not stop a later easy one.
+   */
+  @Test
+  public void fairness() {
+    Hash ph = new Hash(new byte[] {});
+    try (MiningService service = new MiningService(1)) {
+      MiningJob hopeless = service.submit(1, new Transaction("", "A", 1), ph, (h) -> false);
+      Block easy = service.submit(1, new Transaction("", "B", 1), ph, (h) -> true).join();
+      assertEquals(0, easy.getNonce(), "easy request finished");
+      assertFalse(hopeless.isDone(), "hopeless request still running");
+      assertTrue(hopeless.getNoncesTried() > 0, "hopeless request made progress");
+    } // try
+  } // fairness()
+
+  /**
+   * Closing the service cancels what is left.
+   */
+  @Test
+  public void close() {
+    MiningService service = new MiningService(1);
+    MiningJob job = service.submit(1, new Transaction("", "A", 1), new Hash(new byte[] {}),
+        (h) -> false);
+    service.close();
+    assertThrows(CancellationException.class, job::join);
+  } // close()
+} // class TestMiningService
@@ -0,0 +1,130 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Some simple tests of our NonceCheckpoints class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestNonceCheckpoints {
+  /**
+   * A fresh directory for each test.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Checkpoints are kept per block and target and survive a new store on
+   * the same directory.
+   */
+  @Test
+  public void saveAndLoad() throws Exception {
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {1, 2});
+    HashValidator v = DifficultyValidator.leadingZeroBits(20);
+    NonceCheckpoints store = new NonceCheckpoints(this.dir);
+    assertEquals(0, store.load(3, t, ph, v), "nothing saved yet");
+    store.save(3, t, ph, v, 12345);
+    assertEquals(12345, new NonceCheckpoints(this.dir).load(3, t, ph, v), "reloaded");
+    assertEquals(12345, store.load(3, t, ph, DifficultyValidator.leadingZeroBits(20)),
+        "same target");
+    assertEquals(0, store.load(4, t, ph, v), "different number");
+    assertEquals(0, store.load(3, new Transaction("AB", "", 5), ph, v), "different transaction");
+    assertEquals(0, store.load(3, t, ph, DifficultyValidator.leadingZeroBits(12)),
+        "easier target");
+    store.clear(3, t, ph, v);
+    assertEquals(0, store.load(3, t, ph, v), "cleared");
+  } // saveAndLoad()
+
+  /**
+   * Validators that are not DifficultyValidators get no checkpoints.
+   */
+  @Test
+  public void unknownValidator() throws Exception {
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {1, 2});
+    HashValidator v = (h) -> h.get(0) == 0;
+    NonceCheckpoints store = new NonceCheckpoints(this.dir);
+    store.save(3, t, ph, v, 12345);
+    assertEquals(0, store.load(3, t, ph, v), "not resumed");
+    try (Stream<Path> files = Files.list(this.dir)) {
+      assertEquals(0, files.count(), "nothing written");
+    } // try
+  } // unknownValidator()
+
+  /**
+   * An unreadable checkpoint means starting over rather than failing.
+   */
+  @Test
+  public void corrupt() throws Exception {
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {1, 2});
+    HashValidator v = DifficultyValidator.leadingZeroBits(20);
+    NonceCheckpoints store = new NonceCheckpoints(this.dir);
+    Files.writeString(store.file(3, t, ph, v), "not a nonce");
+    assertEquals(0, store.load(3, t, ph, v), "corrupt checkpoint");
+  } // corrupt()
+
+  /**
+   * Resuming from a checkpoint finds the same nonce with far less work,
+   * in both the sequential and the parallel miners.
+   */
+  @Test
+  public void resume() throws Exception {
+    Transaction t = new Transaction("Here", "There", 12);
+    Hash ph = new Hash(new byte[] {3, 4, 5});
+    HashValidator v = DifficultyValidator.leadingZeroBits(16);
+    long expected = new Block(4, t, ph, v).getNonce();
+    NonceCheckpoints store = new NonceCheckpoints(this.dir);
+
+    store.save(4, t, ph, v, expected - 10);
+    assertEquals(expected, new Block(4, t, ph, v, store).getNonce(), "sequential");
+    assertEquals(0, store.load(4, t, ph, v), "cleared once mined");
+
+    store.save(4, t, ph, v, expected - 10);
+    MiningJob job = new ParallelMiner(2, store).mineAsync(4, t, ph, v);
+    assertEquals(expected, job.join().getNonce(), "parallel");
+    assertTrue(job.getNoncesTried() <= 2 * ParallelMiner.CHUNK_SIZE, "resumed, not restarted");
+  } // resume()
+
+  /**
+   * A search that is cut short leaves a checkpoint below which every
+   * nonce has been tried.
+   */
+  @Test
+  public void interrupted() throws Exception {
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {7});
+    // Only a hash of all zeros meets this target.
+    HashValidator v = DifficultyValidator.leadingZeroBits(256);
+    NonceCheckpoints store = new NonceCheckpoints(this.dir, Duration.ZERO);
+    MiningJob job;
+    try (ParallelMiner miner = new ParallelMiner(2, store)) {
+      job = miner.mineAsync(1, t, ph, v);
+      while (store.load(1, t, ph, v) == 0) {
+        Thread.sleep(1);
+      } // while
+      job.cancel(true);
+      job.whenStopped().get(10, TimeUnit.SECONDS);
+    } // try
+    long saved = store.load(1, t, ph, v);
+    assertNotEquals(0, saved, "checkpoint saved while mining");
+    assertTrue(saved <= job.getNoncesTried() + 2 * ParallelMiner.CHUNK_SIZE,
+        "checkpoint no further than the search");
+    assertEquals(0, saved % ParallelMiner.CHUNK_SIZE, "checkpoint at a chunk boundary");
+  } // interrupted()
+} // class TestNonceCheckpoints
@@ -0,0 +1,120 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our NonceHasher class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestNonceHasher {
+  /**
+   * Hashing a range of nonces with one hasher gives the same hashes as
+   * the hashes computed from scratch for each nonce.
+   */
+  @Test
+  public void matchesExpectedHashes() throws Exception {
+    TestBlock.setup();
+    Transaction t = new Transaction("Rebel", "Sky", 250);
+    Hash ph = new Hash(new byte[] {42, 42, 42, 42, 42, 42});
+    NonceHasher hasher = new NonceHasher(5, t, ph);
+    long[] nonces = {0, 1, 255, 256, 65537, Long.MAX_VALUE, -1};
+    for (long nonce : nonces) {
+      Block b = new Block(5, t, ph, nonce);
+      assertArrayEquals(TestBlock.expectedHash(b), hasher.hash(nonce).getBytes(),
+          "hash for nonce " + nonce);
+    } // for
+  } // matchesExpectedHashes()
+
+  /**
+   * Long transactions push the nonce across several digest blocks.
+   */
+  @Test
+  public void longTransaction() throws Exception {
+    TestBlock.setup();
+    Transaction t = new Transaction("A".repeat(70), "B".repeat(130), 9);
+    Hash ph = new Hash(new byte[32]);
+    NonceHasher hasher = new NonceHasher(1234, t, ph);
+    for (long nonce = 0; nonce < 100; nonce++) {
+      Block b = new Block(1234, t, ph, nonce);
+      assertArrayEquals(TestBlock.expectedHash(b), hasher.hash(nonce).getBytes(),
+          "hash for nonce " + nonce);
+    } // for
+  } // longTransaction()
+
+  /**
+   * Every alignment of the nonce, within one block or across two,
+   * gives the same hash as MessageDigest, with either engine.
+   */
+  @Test
+  public void everyAlignment() throws Exception {
+    TestBlock.setup();
+    Hash ph = new Hash(new byte[32]);
+    long[] nonces = {0, 0x0102030405060708L, Long.MIN_VALUE, -2};
+    for (boolean engine : new boolean[] {true, false}) {
+      for (int len = 0; len < 140; len++) {
+        Transaction t = new Transaction("S".repeat(len), "T", len);
+        NonceHasher hasher = new NonceHasher(len, t, ph, engine);
+        for (long nonce : nonces) {
+          Block b = new Block(len, t, ph, nonce);
+          assertArrayEquals(TestBlock.expectedHash(b), hasher.hash(nonce).getBytes(),
+              "hash for nonce " + nonce + " with source of length " + len
+              + (engine ? " (engine)" : " (digest)"));
+        } // for
+      } // for
+    } // for
+  } // everyAlignment()
+
+  /**
+   * A validator that keeps the hashes it is given sees them keep their
+   * values.
+   */
+  @Test
+  public void keptHashes() throws Exception {
+    NonceHasher hasher = new NonceHasher(0, new Transaction("", "", 0), new Hash(new byte[] {}));
+    List<Hash> seen = new ArrayList<Hash>();
+    for (long nonce = 0; nonce < 3; nonce++) {
+      hasher.meets(nonce, (hash) -> seen.add(hash) && false);
+    } // for
+    for (int nonce = 0; nonce < 3; nonce++) {
+      assertEquals(hasher.hash(nonce), seen.get(nonce), "hash for nonce " + nonce);
+    } // for
+    assertNotSame(hasher.hash(0), hasher.hash(0), "a new hash for each call");
+  } // keptHashes()
+
+  /**
+   * Checking the words of a hash against a DifficultyValidator agrees
+   * with checking the hash itself.
+   */
+  @Test
+  public void meetsDifficulty() throws Exception {
+    NonceHasher hasher = new NonceHasher(3, new Transaction("A", "B", 7), new Hash(new byte[32]));
+    DifficultyValidator[] validators = {DifficultyValidator.leadingZeroBits(0),
+        DifficultyValidator.leadingZeroBits(4), DifficultyValidator.leadingZeroBits(9),
+        DifficultyValidator.leadingZeroBits(256)};
+    for (DifficultyValidator v : validators) {
+      for (long nonce = 0; nonce < 2000; nonce++) {
+        assertEquals(v.isValid(hasher.hash(nonce)), hasher.meets(nonce, v),
+            v + " for nonce " + nonce);
+      } // for
+    } // for
+
+    // A hash equal to the target is valid; one more is not.
+    BigInteger value = new BigInteger(1, hasher.hash(0).getBytes());
+    assertTrue(hasher.meets(0, DifficultyValidator.atMost(value)), "equal to the target");
+    assertFalse(hasher.meets(0, DifficultyValidator.atMost(value.subtract(BigInteger.ONE))),
+        "just over the target");
+  } // meetsDifficulty()
+} // class TestNonceHasher
@@ -0,0 +1,65 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our ParallelMiner class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestParallelMiner {
+  /**
+   * The parallel miner should find the same nonce as the sequential
+   * search, whatever the number of workers.
+   */
+  @Test
+  public void sameNonceAsSequential() {
+    Transaction t = new Transaction("Here", "There", 12);
+    Hash ph = new Hash(new byte[] {3, 4, 5});
+    HashValidator v = (h) -> (h.get(0) == 0) && (h.get(1) == 7);
+    Block expected = new Block(4, t, ph, v);
+    for (int workers = 1; workers <= 8; workers *= 2) {
+      Block b = new ParallelMiner(workers).mine(4, t, ph, v);
+      assertEquals(expected.getNonce(), b.getNonce(), "nonce with " + workers + " workers");
+      assertEquals(expected.getHash(), b.getHash(), "hash with " + workers + " workers");
+    } // for
+  } // sameNonceAsSequential()
+
+  /**
+   * A validator that accepts everything should give nonce 0.
+   */
+  @Test
+  public void trivialValidator() {
+    Block b = new ParallelMiner(4).mine(1, new Transaction("", "A", 1),
+        new Hash(new byte[] {}), (h) -> true);
+    assertEquals(0, b.getNonce(), "first nonce is valid");
+  } // trivialValidator()
+
+  /**
+   * Several valid nonces in different chunks should still give the lowest.
+   */
+  @Test
+  public void lowestOfSeveral() {
+    HashValidator v = (h) -> h.get(0) == 0;
+    Transaction t = new Transaction("A", "B", 5);
+    Hash ph = new Hash(new byte[] {1});
+    long expected = new Block(9, t, ph, v).getNonce();
+    long found = new ParallelMiner(3).findNonce(9, t, ph, v);
+    assertEquals(expected, found, "lowest nonce with a one-byte validator");
+    assertTrue(v.isValid(new Block(9, t, ph, found).getHash()), "nonce is valid");
+  } // lowestOfSeveral()
+
+  /**
+   * We need at least one worker.
+   */
+  @Test
+  public void noWorkers() {
+    assertThrows(IllegalArgumentException.class, () -> new ParallelMiner(0));
+  } // noWorkers()
+} // class TestParallelMiner
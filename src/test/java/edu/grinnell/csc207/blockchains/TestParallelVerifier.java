@@ -0,0 +1,135 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our parallel chain verification.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestParallelVerifier {
+  /**
+   * The number of blocks in the test chains, enough for several tasks.
+   */
+  static final int BLOCKS = 3 * ParallelVerifier.THRESHOLD + 17;
+
+  /**
+   * Build a chain of deposits to A, with the given transaction at one
+   * height.
+   *
+   * @param special
+   *   The height of the special transaction (or -1).
+   * @param t
+   *   The special transaction.
+   *
+   * @return the chain.
+   */
+  static BlockChain chain(int special, Transaction t) {
+    BlockChain chain = new BlockChain((h) -> true, new ParallelMiner(4));
+    for (int height = 1; height < BLOCKS; height++) {
+      Transaction next = (height == special) ? t : new Transaction("", "A", 1);
+      chain.append(new Block(chain.getSize() + 1, next, chain.getHash(), 0L));
+    } // for
+    return chain;
+  } // chain(int, Transaction)
+
+  /**
+   * Assert that the parallel check reports the same problem as the
+   * sequential one.
+   *
+   * @param chain
+   *   The chain to check.
+   * @param msg
+   *   What we are checking.
+   */
+  static void assertSameProblem(BlockChain chain, String msg) {
+    Exception parallel = assertThrows(Exception.class, chain::checkParallel, msg);
+    Exception sequential = assertThrows(Exception.class, () -> chain.check(true), msg);
+    assertEquals(sequential.getMessage(), parallel.getMessage(), msg);
+    assertFalse(chain.isCorrectParallel(), msg);
+    assertSameReport(chain, msg);
+  } // assertSameProblem(BlockChain, String)
+
+  /**
+   * Assert that the parallel check reports the same height and number
+   * of blocks checked as the sequential one.
+   *
+   * @param chain
+   *   The chain to check.
+   * @param msg
+   *   What we are checking.
+   */
+  static void assertSameReport(BlockChain chain, String msg) {
+    ValidationReport sequential = chain.validate(true);
+    ValidationReport parallel = chain.validateParallel();
+    assertEquals(sequential.getHeight(), parallel.getHeight(), msg + ": height");
+    assertEquals(sequential.getBlocksChecked(), parallel.getBlocksChecked(),
+        msg + ": blocks checked");
+  } // assertSameReport(BlockChain, String)
+
+  /**
+   * A correct chain passes and moves the watermark to the end.
+   */
+  @Test
+  public void correct() throws Exception {
+    BlockChain chain = chain(-1, null);
+    chain.verifiedHeight = 0;
+    assertTrue(chain.isCorrectParallel(), "correct chain");
+    chain.checkParallel();
+    assertEquals(BLOCKS - 1, chain.verifiedHeight, "watermark");
+    assertSameReport(chain, "correct chain");
+  } // correct()
+
+  /**
+   * The earliest of several tampered blocks is reported.
+   */
+  @Test
+  public void earliestTampered() {
+    BlockChain chain = chain(-1, null);
+    chain.getBlock(BLOCKS - 2).nonce = 5;
+    chain.getBlock(2 * ParallelVerifier.THRESHOLD + 3).prevHash = new Hash(new byte[] {1});
+    chain.getBlock(ParallelVerifier.THRESHOLD + 1).nonce = 7;
+    assertSameProblem(chain, "three tampered blocks");
+    assertEquals(0, chain.verifiedHeight, "watermark reset");
+  } // earliestTampered()
+
+  /**
+   * A problem with the balances before a tampered block is reported.
+   */
+  @Test
+  public void balanceFirst() {
+    BlockChain chain = chain(10, new Transaction("B", "A", 5));
+    chain.getBlock(2000).nonce = 5;
+    assertSameProblem(chain, "overdraft before tampering");
+  } // balanceFirst()
+
+  /**
+   * An overdraft covered by a later deposit is still reported.
+   */
+  @Test
+  public void coveredOverdraft() {
+    BlockChain chain = chain(10, new Transaction("A", "B", 50));
+    assertSameProblem(chain, "overdraft covered later");
+    assertEquals(10, chain.validateParallel().getHeight(), "height of overdraft");
+  } // coveredOverdraft()
+
+  /**
+   * When one block has several problems, they are reported in the same
+   * order as by check.
+   */
+  @Test
+  public void sameBlock() {
+    BlockChain chain = chain(100, new Transaction("C", "A", -5));
+    assertSameProblem(chain, "negative amount from an overdrawn source");
+    chain = chain(100, new Transaction("C", "A", 5));
+    chain.getBlock(100).nonce = 3;
+    assertSameProblem(chain, "overdraft in a tampered block");
+  } // sameBlock()
+} // class TestParallelVerifier
@@ -0,0 +1,141 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our AssociativeArray class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestAssociativeArray {
+  /**
+   * Keys that collide on the same slot.
+   */
+  static class Collider {
+    /**
+     * The value of the key.
+     */
+    int value;
+
+    /**
+     * Create a key.
+     *
+     * @param val
+     *   The value of the key.
+     */
+    Collider(int val) {
+      this.value = val;
+    } // Collider(int)
+
+    /**
+     * Every key has the same hash code.
+     *
+     * @return the hash code.
+     */
+    public int hashCode() {
+      return 42;
+    } // hashCode()
+
+    /**
+     * Keys are equal when their values are.
+     *
+     * @param other
+     *   The object to compare to.
+     *
+     * @return true if other is a key with the same value.
+     */
+    public boolean equals(Object other) {
+      return (other instanceof Collider) && (((Collider) other).value == this.value);
+    } // equals(Object)
+
+    /**
+     * Convert to a string.
+     *
+     * @return the value as a string.
+     */
+    public String toString() {
+      return Integer.toString(this.value);
+    } // toString()
+  } // class Collider
+
+  /**
+   * The basic operations, including the exception-free lookups.
+   */
+  @Test
+  public void basics() throws Exception {
+    AssociativeArray<String, Integer> arr = new AssociativeArray<String, Integer>();
+    arr.set("a", 1);
+    arr.set("b", 2);
+    arr.set("a", 3);
+    assertEquals(2, arr.size(), "size after update");
+    assertEquals(3, arr.get("a"), "updated value");
+    assertEquals(2, arr.getOrDefault("b", 0), "present key");
+    assertEquals(0, arr.getOrDefault("c", 0), "absent key");
+    assertEquals(0, arr.getOrDefault(null, 0), "null key");
+    assertTrue(arr.containsKey("b"), "contains b");
+    assertFalse(arr.hasKey(null), "null is never a key");
+    assertEquals(-1, arr.find("c"), "find of absent key");
+    assertThrows(KeyNotFoundException.class, () -> arr.get("c"));
+    assertThrows(NullKeyException.class, () -> arr.set(null, 1));
+    AssociativeArray<String, Integer> copy = arr.clone();
+    arr.set("b", 5);
+    assertEquals(2, copy.get("b"), "clone is independent");
+    arr.remove("a");
+    arr.remove("a");
+    assertEquals(1, arr.size(), "size after remove");
+    assertEquals("{b:5}", arr.toString(), "toString");
+  } // basics()
+
+  /**
+   * Removing from the middle of a run of colliding keys must not lose
+   * the keys after it.
+   */
+  @Test
+  public void collisions() throws Exception {
+    AssociativeArray<Collider, Integer> arr = new AssociativeArray<Collider, Integer>();
+    for (int i = 0; i < 20; i++) {
+      arr.set(new Collider(i), i);
+    } // for
+    for (int i = 0; i < 20; i += 3) {
+      arr.remove(new Collider(i));
+    } // for
+    for (int i = 0; i < 20; i++) {
+      assertEquals(i % 3 != 0, arr.hasKey(new Collider(i)), "key " + i);
+    } // for
+  } // collisions()
+
+  /**
+   * Many random operations should agree with HashMap.
+   */
+  @Test
+  public void randomOperations() throws Exception {
+    AssociativeArray<Integer, Integer> arr = new AssociativeArray<Integer, Integer>();
+    HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+    Random random = new Random(207);
+    for (int step = 0; step < 100_000; step++) {
+      // Multiples of 1024 crowd into few slots of small tables.
+      Integer key = random.nextInt(2000) * ((step % 2 == 0) ? 1 : 1024);
+      if (random.nextInt(3) == 0) {
+        arr.remove(key);
+        expected.remove(key);
+      } else {
+        arr.set(key, step);
+        expected.put(key, step);
+      } // if/else
+    } // for
+    assertEquals(expected.size(), arr.size(), "size");
+    for (int key = 0; key < 2000 * 1024; key++) {
+      assertEquals(expected.get(key), arr.getOrDefault(key, null), "value of " + key);
+    } // for
+  } // randomOperations()
+} // class TestAssociativeArray
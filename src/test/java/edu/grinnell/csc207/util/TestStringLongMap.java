@@ -0,0 +1,80 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our StringLongMap class.
+ *
+ * @author Leonardo Alves Nunes
+ * @author Natalie Nardone
+ */
+public class TestStringLongMap {
+  /**
+   * The basic operations.
+   */
+  @Test
+  public void basics() {
+    StringLongMap map = new StringLongMap();
+    assertEquals(0, map.get("a"), "absent key");
+    assertEquals(-5, map.addTo("a", -5), "addTo absent key");
+    assertEquals(Integer.MAX_VALUE * 2L - 5, map.addTo("a", Integer.MAX_VALUE * 2L),
+        "no int overflow");
+    map.put("b", 7);
+    assertEquals(2, map.size(), "size");
+    assertTrue(map.containsKey("b"), "contains b");
+    assertFalse(map.containsKey(null), "null is never a key");
+    assertEquals(9, map.getOrDefault("c", 9), "default");
+    StringLongMap copy = map.clone();
+    map.addTo("b", 1);
+    assertEquals(7, copy.get("b"), "clone is independent");
+    map.remove("a");
+    map.remove("a");
+    assertEquals("{b:8}", map.toString(), "toString");
+    assertThrows(NullPointerException.class, () -> map.addTo(null, 1));
+    map.clear();
+    assertEquals(0, map.size(), "cleared");
+  } // basics()
+
+  /**
+   * Many random operations should agree with HashMap.
+   */
+  @Test
+  public void randomOperations() {
+    StringLongMap map = new StringLongMap();
+    HashMap<String, Long> expected = new HashMap<String, Long>();
+    Random random = new Random(207);
+    for (int step = 0; step < 100_000; step++) {
+      String key = "k" + random.nextInt(3000);
+      long delta = random.nextInt(1000) - 500;
+      switch (random.nextInt(4)) {
+        case 0:
+          map.remove(key);
+          expected.remove(key);
+          break;
+        case 1:
+          map.put(key, delta);
+          expected.put(key, delta);
+          break;
+        default:
+          map.addTo(key, delta);
+          expected.merge(key, delta, Long::sum);
+          break;
+      } // switch
+    } // for
+    assertEquals(expected.size(), map.size(), "size");
+    for (int i = 0; i < 3000; i++) {
+      String key = "k" + i;
+      assertEquals(expected.containsKey(key), map.containsKey(key), "has " + key);
+      assertEquals(expected.getOrDefault(key, 0L), map.get(key), "value of " + key);
+    } // for
+  } // randomOperations()
+} // class TestStringLongMap